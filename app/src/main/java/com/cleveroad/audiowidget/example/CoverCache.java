@@ -0,0 +1,165 @@
+package com.cleveroad.audiowidget.example;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import jp.wasabeef.glide.transformations.CropCircleTransformation;
+
+/**
+ * Cache of album covers already cropped and scaled for widget's album button. Covers of
+ * neighbour tracks can be prefetched, so they are shown instantly when user skips tracks.
+ * <p>
+ * Covers are kept in bounded LRU cache. Covers that failed to load are remembered too,
+ * so tracks without album art don't trigger new loads on every skip.
+ */
+class CoverCache {
+
+    /**
+     * Max number of covers kept in memory: current track, its neighbours and few recently played.
+     */
+    private static final int MAX_COVERS = 8;
+
+    private final Context context;
+    private final int coverSize;
+    private final CropCircleTransformation cropCircleTransformation;
+    private final LruCache<Uri, Bitmap> covers;
+    private final Set<Uri> missingCovers = new HashSet<>();
+    private final Map<Uri, CoverTarget> pendingLoads = new HashMap<>();
+
+    CoverCache(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        this.coverSize = context.getResources().getDimensionPixelSize(R.dimen.cover_size);
+        this.cropCircleTransformation = new CropCircleTransformation(context);
+        // covers are ARGB_8888 bitmaps
+        this.covers = new LruCache<Uri, Bitmap>(MAX_COVERS * coverSize * coverSize * 4) {
+            @Override
+            protected int sizeOf(Uri key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * Get cover from cache or load it. Callback is called immediately if cover is cached
+     * or is known to be missing.
+     * @param uri album art uri
+     * @param callback callback to be notified about loaded cover
+     */
+    void load(@NonNull Uri uri, @NonNull Callback callback) {
+        Bitmap cover = covers.get(uri);
+        if (cover != null || missingCovers.contains(uri)) {
+            callback.onCoverLoaded(uri, cover);
+            return;
+        }
+        request(uri).callback = callback;
+    }
+
+    /**
+     * Load cover into cache in background if it's not there yet.
+     * @param uri album art uri
+     */
+    void prefetch(@NonNull Uri uri) {
+        if (covers.get(uri) != null || missingCovers.contains(uri))
+            return;
+        request(uri);
+    }
+
+    /**
+     * Release cached covers in response to memory pressure.
+     * @param level trim level passed to {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            covers.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // keep current track and its neighbours only
+            covers.trimToSize(covers.maxSize() * 3 / MAX_COVERS);
+        }
+    }
+
+    /**
+     * Cancel pending loads and release all covers.
+     */
+    void clear() {
+        for (CoverTarget target : pendingLoads.values()) {
+            Glide.clear(target);
+        }
+        pendingLoads.clear();
+        covers.evictAll();
+        missingCovers.clear();
+    }
+
+    @NonNull
+    private CoverTarget request(@NonNull Uri uri) {
+        CoverTarget target = pendingLoads.get(uri);
+        if (target != null)
+            return target;
+        target = new CoverTarget(uri);
+        pendingLoads.put(uri, target);
+        Glide.with(context)
+                .load(uri)
+                .asBitmap()
+                .override(coverSize, coverSize)
+                .centerCrop()
+                .transform(cropCircleTransformation)
+                .into(target);
+        return target;
+    }
+
+    /**
+     * Callback of cover loading.
+     */
+    interface Callback {
+
+        /**
+         * Called when cover is loaded.
+         * @param uri album art uri
+         * @param cover cover or null if track has no album art
+         */
+        void onCoverLoaded(@NonNull Uri uri, @Nullable Bitmap cover);
+    }
+
+    private final class CoverTarget extends SimpleTarget<Bitmap> {
+
+        private final Uri uri;
+        private Callback callback;
+
+        CoverTarget(@NonNull Uri uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public void onResourceReady(Bitmap resource, GlideAnimation<? super Bitmap> glideAnimation) {
+            pendingLoads.remove(uri);
+            covers.put(uri, resource);
+            if (callback != null) {
+                callback.onCoverLoaded(uri, resource);
+            }
+        }
+
+        @Override
+        public void onLoadFailed(Exception e, Drawable errorDrawable) {
+            super.onLoadFailed(e, errorDrawable);
+            pendingLoads.remove(uri);
+            missingCovers.add(uri);
+            if (callback != null) {
+                callback.onCoverLoaded(uri, null);
+            }
+        }
+    }
+}
@@ -2,8 +2,6 @@ package com.cleveroad.audiowidget.example;
 
 import android.Manifest;
 import android.annotation.TargetApi;
-import android.app.ActivityManager;
-import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -49,6 +47,7 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
     private MusicAdapter adapter;
     private EmptyViewObserver emptyViewObserver;
+    private int libraryVersion;
 
     @Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -67,10 +66,7 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                     @Override
                     public void onItemClick(RecyclerView parent, View view, int position, long id) {
                         MusicItem item = adapter.getItem(position);
-                        if (!isServiceRunning(MusicService.class)) {
-                            MusicService.setTracks(MainActivity.this, adapter.getSnapshot().toArray(new MusicItem[adapter.getNonFilteredCount()]));
-                        }
-                        MusicService.playTrack(MainActivity.this, item);
+                        MusicService.playTrack(MainActivity.this, libraryVersion, item.id());
                     }
                 });
 
@@ -183,9 +179,27 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         MenuItem searchItem = menu.findItem(R.id.item_search);
         SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
         searchView.setOnQueryTextListener(this);
+        menu.findItem(R.id.item_shuffle).setChecked(MusicService.isShuffle(this));
+        menu.findItem(R.id.item_repeat_one).setChecked(MusicService.repeatMode(this) == PlayQueue.REPEAT_ONE);
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.item_shuffle:
+                item.setChecked(!item.isChecked());
+                MusicService.setPlaybackMode(this, item.isChecked(), MusicService.repeatMode(this));
+                return true;
+            case R.id.item_repeat_one:
+                item.setChecked(!item.isChecked());
+                MusicService.setPlaybackMode(this, MusicService.isShuffle(this),
+                        item.isChecked() ? PlayQueue.REPEAT_ONE : PlayQueue.REPEAT_ALL);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     public Loader<Collection<MusicItem>> onCreateLoader(int id, Bundle args) {
         if (id == MUSIC_LOADER_ID)
@@ -197,7 +211,8 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     public void onLoadFinished(Loader<Collection<MusicItem>> loader, Collection<MusicItem> data) {
         adapter.addAll(data);
         adapter.notifyItemRangeInserted(0, data.size());
-        MusicService.setTracks(this, data.toArray(new MusicItem[data.size()]));
+        libraryVersion = MusicLibrary.get().publish(data);
+        MusicService.setTracks(this, libraryVersion);
     }
 
     @Override
@@ -223,19 +238,4 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         emptyViewObserver.unbind();
         super.onDestroy();
     }
-
-    /**
-     * Check if service is running.
-     * @param serviceClass
-     * @return
-     */
-    private boolean isServiceRunning(@NonNull Class<?> serviceClass) {
-        ActivityManager manager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-        for (ActivityManager.RunningServiceInfo service : manager.getRunningServices(Integer.MAX_VALUE)) {
-            if (serviceClass.getName().equals(service.service.getClassName())) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import android.os.Parcelable;
  * Music track model.
  */
 class MusicItem implements Parcelable {
+    private long id;
     private String title;
     private String album;
     private String artist;
@@ -15,6 +16,11 @@ class MusicItem implements Parcelable {
     private Uri albumArtUri;
     private Uri fileUri;
 
+    public MusicItem id(long id) {
+        this.id = id;
+        return this;
+    }
+
     public MusicItem title(String title) {
         this.title = title;
         return this;
@@ -45,6 +51,14 @@ class MusicItem implements Parcelable {
         return this;
     }
 
+    /**
+     * Get stable track id (media store id).
+     * @return track id
+     */
+    public long id() {
+        return id;
+    }
+
     public String title() {
         return title;
     }
@@ -76,6 +90,7 @@ class MusicItem implements Parcelable {
 
         MusicItem item = (MusicItem) o;
 
+        if (id != item.id) return false;
         if (duration != item.duration) return false;
         if (title != null ? !title.equals(item.title) : item.title != null) return false;
         if (album != null ? !album.equals(item.album) : item.album != null) return false;
@@ -88,7 +103,8 @@ class MusicItem implements Parcelable {
 
     @Override
     public int hashCode() {
-        int result = title != null ? title.hashCode() : 0;
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (title != null ? title.hashCode() : 0);
         result = 31 * result + (album != null ? album.hashCode() : 0);
         result = 31 * result + (artist != null ? artist.hashCode() : 0);
         result = 31 * result + (int) (duration ^ (duration >>> 32));
@@ -100,7 +116,8 @@ class MusicItem implements Parcelable {
     @Override
     public String toString() {
         return "MusicItem{" +
-                "title='" + title + '\'' +
+                "id=" + id +
+                ", title='" + title + '\'' +
                 ", album='" + album + '\'' +
                 ", artist='" + artist + '\'' +
                 ", duration=" + duration +
@@ -117,6 +134,7 @@ class MusicItem implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(this.id);
         dest.writeString(this.title);
         dest.writeString(this.album);
         dest.writeString(this.artist);
@@ -129,6 +147,7 @@ class MusicItem implements Parcelable {
     }
 
     protected MusicItem(Parcel in) {
+        this.id = in.readLong();
         this.title = in.readString();
         this.album = in.readString();
         this.artist = in.readString();
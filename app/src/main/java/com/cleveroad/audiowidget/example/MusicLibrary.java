@@ -0,0 +1,73 @@
+package com.cleveroad.audiowidget.example;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+
+/**
+ * Process-wide library of tracks shared between activity and music service. Tracks are published
+ * as immutable snapshots with increasing versions, so components exchange only version numbers
+ * and track ids instead of parcelling tracks.
+ */
+final class MusicLibrary {
+
+    private static final MusicLibrary INSTANCE = new MusicLibrary();
+
+    private volatile Snapshot snapshot = new Snapshot(0, new MusicItem[0]);
+
+    private MusicLibrary() {
+
+    }
+
+    @NonNull
+    public static MusicLibrary get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publish new tracks.
+     * @param tracks tracks
+     * @return version of published snapshot
+     */
+    public synchronized int publish(@NonNull Collection<MusicItem> tracks) {
+        Snapshot snapshot = new Snapshot(this.snapshot.version + 1, tracks.toArray(new MusicItem[tracks.size()]));
+        this.snapshot = snapshot;
+        return snapshot.version;
+    }
+
+    /**
+     * Get latest snapshot of library.
+     * @return latest snapshot
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Immutable version of library.
+     */
+    public static final class Snapshot {
+
+        private final int version;
+        private final MusicItem[] tracks;
+
+        private Snapshot(int version, @NonNull MusicItem[] tracks) {
+            this.version = version;
+            this.tracks = tracks;
+        }
+
+        public int version() {
+            return version;
+        }
+
+        /**
+         * Get tracks of snapshot. Returned array is shared and must not be modified.
+         * @return tracks
+         */
+        @NonNull
+        public MusicItem[] tracks() {
+            return tracks;
+        }
+    }
+}
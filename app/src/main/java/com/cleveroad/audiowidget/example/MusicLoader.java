@@ -25,6 +25,7 @@ class MusicLoader extends BaseAsyncTaskLoader<Collection<MusicItem>> {
     @Override
     public Collection<MusicItem> loadInBackground() {
         String[] projection = new String[]{
+                MediaStore.Audio.Media._ID,
                 MediaStore.Audio.Media.TITLE,
                 MediaStore.Audio.Media.ALBUM,
                 MediaStore.Audio.Media.ALBUM_ID,
@@ -47,6 +48,7 @@ class MusicLoader extends BaseAsyncTaskLoader<Collection<MusicItem>> {
         List<MusicItem> items = new ArrayList<>();
         try {
             if (cursor.moveToFirst()) {
+                int id = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
                 int title = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
                 int album = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
                 int artist = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
@@ -55,6 +57,7 @@ class MusicLoader extends BaseAsyncTaskLoader<Collection<MusicItem>> {
                 int data = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
                 do {
                     MusicItem item = new MusicItem()
+                            .id(cursor.getLong(id))
                             .title(cursor.getString(title))
                             .album(cursor.getString(album))
                             .artist(cursor.getString(artist))
@@ -1,67 +1,198 @@
 package com.cleveroad.audiowidget.example;
 
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Parcelable;
+import android.os.Looper;
+import android.os.Message;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.animation.GlideAnimation;
-import com.bumptech.glide.request.target.SimpleTarget;
 import com.cleveroad.audiowidget.AudioWidget;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import jp.wasabeef.glide.transformations.CropCircleTransformation;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple implementation of music service.
+ * <p>
+ * Media players are owned by playback thread, so blocking player calls don't stall widget
+ * animations running on main thread. Main thread sends commands to playback thread and
+ * receives back only snapshots of player state ({@link PlayerState}) and playback position.
  */
 public class MusicService extends Service implements MediaPlayer.OnPreparedListener,
-        MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener, AudioWidget.OnControlsClickListener, AudioWidget.OnWidgetStateChangedListener {
+        MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener, AudioWidget.OnControlsClickListener, AudioWidget.OnWidgetStateChangedListener,
+        CoverCache.Callback {
 
-    private static final String EXTRA_FILE_URIS = "EXTRA_FILE_URIS";
+    private static final String EXTRA_LIBRARY_VERSION = "EXTRA_LIBRARY_VERSION";
     private static final String EXTRA_SELECT_TRACK = "EXTRA_SELECT_TRACK";
+    private static final String EXTRA_SHUFFLE = "EXTRA_SHUFFLE";
+    private static final String EXTRA_REPEAT_MODE = "EXTRA_REPEAT_MODE";
+    private static final String KEY_SHUFFLE = "shuffle";
+    private static final String KEY_REPEAT_MODE = "repeat_mode";
     private static final long UPDATE_INTERVAL = 1000;
-    private static final String KEY_POSITION_X = "position_x";
-    private static final String KEY_POSITION_Y = "position_y";
+    /**
+     * Interval of session checkpoints while track plays and position isn't tracked for widget.
+     */
+    private static final long CHECKPOINT_INTERVAL = 10000;
+    private static final String SESSION_FILE = "session.bin";
+
+    /**
+     * Commands handled by playback thread.
+     */
+    private static final int MSG_INIT = 1;
+    private static final int MSG_UPDATE_TRACKS = 2;
+    private static final int MSG_SELECT_TRACK = 3;
+    private static final int MSG_SKIP = 4;
+    private static final int MSG_PLAY_PAUSE = 5;
+    private static final int MSG_PROGRESS_VISIBILITY = 6;
+    private static final int MSG_UPDATE_POSITION = 7;
+    private static final int MSG_RELEASE = 8;
+    private static final int MSG_PLAYBACK_MODE = 9;
+    private static final int MSG_PLAY_TARGET = 10;
+    private static final int MSG_CHECKPOINT = 11;
+    private static final int MSG_RESTORE_SESSION = 12;
+
+    /**
+     * Updates handled by main thread.
+     */
+    private static final int MSG_PLAYER_STATE = 1;
+    private static final int MSG_POSITION = 2;
+
+    // main thread state
 
     private AudioWidget audioWidget;
+    private Handler mainHandler;
+    private BroadcastReceiver screenStateReceiver;
+    private boolean screenOn;
+    private boolean widgetExpanded;
+    private boolean widgetRemoved;
+    /**
+     * True if saved session was already requested to be restored by first start command.
+     */
+    private boolean sessionRestoreRequested;
+    /**
+     * True if collapsed widget with progress is visible, as last reported to playback thread.
+     */
+    private boolean progressVisible;
+    /**
+     * Track displayed by widget.
+     */
+    private MusicItem displayedTrack;
+    private CoverCache coverCache;
+    private WidgetPositionStore positionStore;
+
+    private Handler playbackHandler;
+    /**
+     * Skips requested by user and not handled by playback thread yet. Rapid taps on next or
+     * previous buttons are collapsed into single skip by several tracks.
+     */
+    private final AtomicInteger pendingSkip = new AtomicInteger();
+
+    // playback thread state
+
     private MediaPlayer mediaPlayer;
+    /**
+     * Track loaded (prepared or being prepared) into {@link #mediaPlayer}. May differ from current
+     * track of queue while burst of skips settles.
+     */
+    private MusicItem loadedItem;
+    private final SkipCoordinator skipCoordinator = new SkipCoordinator();
+    /**
+     * Number of tracks failed to play in a row.
+     */
+    private int failedTracks;
+    /**
+     * Players prepared ahead for neighbour tracks of current one.
+     */
+    private StandbyPlayer nextPlayer = new StandbyPlayer();
+    private StandbyPlayer previousPlayer = new StandbyPlayer();
     private boolean preparing;
-    private int playingIndex = -1;
-    private final List<MusicItem> items = new ArrayList<>();
+    private final PlayQueue queue = new PlayQueue();
+    /**
+     * Version of {@link MusicLibrary} snapshot loaded into queue.
+     */
+    private int libraryVersion;
+    private PlaybackSession session;
+    /**
+     * Position to seek to once restored track is prepared or -1 if session isn't being restored.
+     */
+    private int resumePosition = -1;
+    /**
+     * Id of track restored from session.
+     */
+    private long resumeTrackId = -1;
+    private boolean resumePaused;
     private boolean paused;
-    private Timer timer;
-    private CropCircleTransformation cropCircleTransformation;
-    private SharedPreferences preferences;
+    private boolean showingProgress;
+    private boolean trackingPosition;
 
 
-    public static void setTracks(@NonNull Context context, @NonNull MusicItem[] tracks) {
+    /**
+     * Load tracks published to {@link MusicLibrary}.
+     * @param context instance of context
+     * @param libraryVersion version returned by {@link MusicLibrary#publish(java.util.Collection)}
+     */
+    public static void setTracks(@NonNull Context context, int libraryVersion) {
         Intent intent = new Intent(context, MusicService.class);
-        intent.putExtra(EXTRA_FILE_URIS, tracks);
+        intent.putExtra(EXTRA_LIBRARY_VERSION, libraryVersion);
         context.startService(intent);
     }
 
-    public static void playTrack(@NonNull Context context, @NonNull MusicItem item) {
+    /**
+     * Play track from {@link MusicLibrary} or toggle playback if track is already playing.
+     * @param context instance of context
+     * @param libraryVersion version of library containing track
+     * @param trackId id of track
+     */
+    public static void playTrack(@NonNull Context context, int libraryVersion, long trackId) {
         Intent intent = new Intent(context, MusicService.class);
-        intent.putExtra(EXTRA_SELECT_TRACK, item);
+        intent.putExtra(EXTRA_LIBRARY_VERSION, libraryVersion);
+        intent.putExtra(EXTRA_SELECT_TRACK, trackId);
         context.startService(intent);
     }
 
+    /**
+     * Set order of playback. Mode is saved and used by service from now on.
+     * @param context instance of context
+     * @param shuffle true to play tracks in random order
+     * @param repeatMode {@link PlayQueue#REPEAT_ALL} or {@link PlayQueue#REPEAT_ONE}
+     */
+    public static void setPlaybackMode(@NonNull Context context, boolean shuffle, int repeatMode) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putBoolean(KEY_SHUFFLE, shuffle)
+                .putInt(KEY_REPEAT_MODE, repeatMode)
+                .apply();
+        Intent intent = new Intent(context, MusicService.class);
+        intent.putExtra(EXTRA_SHUFFLE, shuffle);
+        intent.putExtra(EXTRA_REPEAT_MODE, repeatMode);
+        context.startService(intent);
+    }
+
+    public static boolean isShuffle(@NonNull Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(KEY_SHUFFLE, false);
+    }
+
+    public static int repeatMode(@NonNull Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getInt(KEY_REPEAT_MODE, PlayQueue.REPEAT_ALL);
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
@@ -71,48 +202,369 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
     @Override
     public void onCreate() {
         super.onCreate();
-        preferences = PreferenceManager.getDefaultSharedPreferences(this);
-        mediaPlayer = new MediaPlayer();
-        mediaPlayer.setOnPreparedListener(this);
-        mediaPlayer.setOnCompletionListener(this);
-        mediaPlayer.setOnErrorListener(this);
-        mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        mainHandler = new Handler(new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                handleUpdate(msg);
+                return true;
+            }
+        });
+        positionStore = new WidgetPositionStore(PreferenceManager.getDefaultSharedPreferences(this), 100, 100);
         audioWidget = new AudioWidget.Builder(this).build();
         audioWidget.controller().onControlsClickListener(this);
         audioWidget.controller().onWidgetStateChangedListener(this);
-        cropCircleTransformation = new CropCircleTransformation(this);
+        coverCache = new CoverCache(this);
+        screenOn = isScreenOn();
+        screenStateReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+                updateProgressVisibility();
+            }
+        };
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenStateReceiver, filter);
+        HandlerThread playbackThread = new HandlerThread("MusicPlayback", Process.THREAD_PRIORITY_AUDIO);
+        playbackThread.start();
+        playbackHandler = new Handler(playbackThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                handleCommand(msg);
+                return true;
+            }
+        });
+        playbackHandler.sendEmptyMessage(MSG_INIT);
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean isScreenOn() {
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH) {
+            return powerManager.isInteractive();
+        }
+        return powerManager.isScreenOn();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (!sessionRestoreRequested) {
+            sessionRestoreRequested = true;
+            // only sticky restart resumes playback, UI just shows where user stopped
+            playbackHandler.obtainMessage(MSG_RESTORE_SESSION, intent == null ? 1 : 0, 0).sendToTarget();
+        }
         if (intent != null) {
-            if (intent.hasExtra(EXTRA_FILE_URIS)) {
-                addNewTracks(intent);
-            } else if (intent.hasExtra(EXTRA_SELECT_TRACK)) {
-                selectNewTrack(intent);
+            if (intent.hasExtra(EXTRA_SHUFFLE)) {
+                playbackHandler.obtainMessage(MSG_PLAYBACK_MODE,
+                        intent.getBooleanExtra(EXTRA_SHUFFLE, false) ? 1 : 0,
+                        intent.getIntExtra(EXTRA_REPEAT_MODE, PlayQueue.REPEAT_ALL)).sendToTarget();
+            }
+            if (intent.hasExtra(EXTRA_LIBRARY_VERSION)) {
+                playbackHandler.obtainMessage(MSG_UPDATE_TRACKS, intent.getIntExtra(EXTRA_LIBRARY_VERSION, 0), 0).sendToTarget();
+            }
+            if (intent.hasExtra(EXTRA_SELECT_TRACK)) {
+                // selected track supersedes pending selections and skips
+                playbackHandler.removeMessages(MSG_SELECT_TRACK);
+                playbackHandler.removeMessages(MSG_SKIP);
+                pendingSkip.set(0);
+                playbackHandler.obtainMessage(MSG_SELECT_TRACK, intent.getLongExtra(EXTRA_SELECT_TRACK, 0)).sendToTarget();
             }
             return START_STICKY;
         }
         return super.onStartCommand(null, flags, startId);
     }
 
-    private void selectNewTrack(Intent intent) {
-        if (preparing) {
+    /**
+     * Handle command on playback thread.
+     */
+    private void handleCommand(@NonNull Message msg) {
+        switch (msg.what) {
+            case MSG_INIT:
+                mediaPlayer = newMediaPlayer();
+                session = new PlaybackSession(new File(getFilesDir(), SESSION_FILE));
+                queue.shuffle(isShuffle(this));
+                queue.repeatMode(repeatMode(this));
+                break;
+            case MSG_RESTORE_SESSION:
+                restoreSession(msg.arg1 != 0);
+                break;
+            case MSG_PLAYBACK_MODE:
+                queue.shuffle(msg.arg1 != 0);
+                queue.repeatMode(msg.arg2);
+                // neighbours depend on play order
+                prepareNeighbourTracks();
+                break;
+            case MSG_UPDATE_TRACKS:
+                updateTracks(msg.arg1);
+                break;
+            case MSG_SELECT_TRACK:
+                selectNewTrack((Long) msg.obj);
+                break;
+            case MSG_SKIP:
+                skip(pendingSkip.getAndSet(0));
+                break;
+            case MSG_PLAY_TARGET:
+                playSkipTarget();
+                break;
+            case MSG_PLAY_PAUSE:
+                togglePlayback();
+                break;
+            case MSG_PROGRESS_VISIBILITY:
+                showingProgress = msg.arg1 != 0;
+                updatePositionTracking();
+                break;
+            case MSG_UPDATE_POSITION:
+                updatePosition();
+                break;
+            case MSG_CHECKPOINT:
+                // checkpoints session and schedules next tick
+                updatePositionTracking();
+                break;
+            case MSG_RELEASE:
+                release(msg.arg1 != 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + msg.what);
+        }
+    }
+
+    /**
+     * Restore queue, current track and its position saved before service was killed.
+     * @param autoplay true if track that was playing should continue playing, false to restore it paused
+     */
+    private void restoreSession(boolean autoplay) {
+        PlaybackSession.State state = session.restore();
+        if (state == null)
+            return;
+        queue.replace(state.tracks());
+        int index = queue.indexOf(state.trackId());
+        if (index == -1)
+            return;
+        queue.currentIndex(index);
+        resumePosition = state.position();
+        resumeTrackId = state.trackId();
+        resumePaused = !autoplay || !state.playing();
+        startCurrentTrack();
+    }
+
+    private MediaPlayer newMediaPlayer() {
+        // player delivers its callbacks to looper of thread it was created on
+        MediaPlayer player = new MediaPlayer();
+        player.setOnPreparedListener(this);
+        player.setOnCompletionListener(this);
+        player.setOnErrorListener(this);
+        player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        return player;
+    }
+
+    private void selectNewTrack(long trackId) {
+        int index = queue.indexOf(trackId);
+        if (index == -1) {
             return;
         }
-        MusicItem item = intent.getParcelableExtra(EXTRA_SELECT_TRACK);
-        if (item == null && playingIndex == -1 || playingIndex != -1 && items.get(playingIndex).equals(item)) {
+        // selection supersedes pending skip target
+        playbackHandler.removeMessages(MSG_PLAY_TARGET);
+        if (loadedItem != null && loadedItem.id() == trackId) {
+            queue.currentIndex(index);
+            // track being prepared will start by itself
+            if (!preparing) {
+                togglePlayback();
+            }
+            return;
+        }
+        // preparing of other track is cancelled by switching to selected one
+        playTrack(index);
+    }
+
+    private void togglePlayback() {
+        if (!preparing && loadedItem != null) {
             if (mediaPlayer.isPlaying()) {
                 mediaPlayer.pause();
-                audioWidget.controller().pause();
+                paused = true;
             } else {
                 mediaPlayer.start();
-                audioWidget.controller().start();
+                paused = false;
             }
+            updatePositionTracking();
+        }
+        // widget toggles its state by itself, so report actual state back
+        publishState(false, currentPosition());
+    }
+
+    /**
+     * Skip tracks. Target of skip that continues burst of skips isn't prepared until burst
+     * settles; preparing of previous target is cancelled, while loaded track keeps playing.
+     * @param offset number of tracks to skip, negative to skip backwards
+     */
+    private void skip(int offset) {
+        if (offset == 0 || queue.isEmpty())
+            return;
+        int index = queue.offsetIndex(offset);
+        boolean burst = skipCoordinator.onSkip(SystemClock.uptimeMillis());
+        playbackHandler.removeMessages(MSG_PLAY_TARGET);
+        if (!burst || isStandbyPreparedFor(queue.get(index))) {
+            playTrack(index);
             return;
         }
-        playingIndex = items.indexOf(item);
-        startCurrentTrack();
+        cancelPreparing();
+        queue.currentIndex(index);
+        if (loadedItem != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // linked player is prepared for neighbour of loaded track, not for target of burst
+            mediaPlayer.setNextMediaPlayer(null);
+        }
+        playbackHandler.sendEmptyMessageDelayed(MSG_PLAY_TARGET, skipCoordinator.settleDelay());
+    }
+
+    /**
+     * Play current track of queue unless it's already loaded.
+     */
+    private void playSkipTarget() {
+        MusicItem target = queue.current();
+        if (target == null)
+            return;
+        // burst may return to loaded track
+        if (loadedItem != null && loadedItem.id() == target.id())
+            return;
+        playTrack(queue.currentIndex());
+    }
+
+    private boolean isStandbyPreparedFor(@NonNull MusicItem item) {
+        return nextPlayer.isPreparedFor(item) || previousPlayer.isPreparedFor(item);
+    }
+
+    /**
+     * Cancel preparing of track by current player.
+     */
+    private void cancelPreparing() {
+        if (!preparing)
+            return;
+        mediaPlayer.reset();
+        preparing = false;
+        loadedItem = null;
+        resumePosition = -1;
+        skipCoordinator.onPrepareCancelled();
+        updatePositionTracking();
+    }
+
+    /**
+     * Play track, switching to standby player if it's already prepared for this track.
+     * @param index index of track
+     */
+    private void playTrack(int index) {
+        queue.currentIndex(index);
+        if (!switchToStandbyPlayer(loadedItem)) {
+            startCurrentTrack();
+        }
+    }
+
+    /**
+     * Switch playback to standby player prepared for current track of queue. Current
+     * player is rewound and kept as standby player of its track.
+     * @param currentItem track of current player or null if current player isn't prepared
+     * @return true if playback was switched, false if there is no prepared standby player for track
+     */
+    private boolean switchToStandbyPlayer(@Nullable MusicItem currentItem) {
+        MusicItem item = queue.current();
+        StandbyPlayer standby;
+        if (nextPlayer.isPreparedFor(item)) {
+            standby = nextPlayer;
+        } else if (previousPlayer.isPreparedFor(item)) {
+            standby = previousPlayer;
+        } else {
+            return false;
+        }
+        MediaPlayer player = mediaPlayer;
+        mediaPlayer = standby.player;
+        standby.player = player;
+        loadedItem = item;
+        // restored track is replaced before it was resumed
+        resumePosition = -1;
+        if (currentItem != null && !preparing) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                player.setNextMediaPlayer(null);
+            }
+            player.setLooping(false);
+            player.pause();
+            player.seekTo(0);
+            standby.item = currentItem;
+            standby.prepared = true;
+        } else {
+            if (preparing) {
+                skipCoordinator.onPrepareCancelled();
+            }
+            player.reset();
+            standby.item = null;
+            standby.prepared = false;
+        }
+        // player of previous track always becomes previous standby player and vice versa
+        StandbyPlayer tmp = nextPlayer;
+        nextPlayer = previousPlayer;
+        previousPlayer = tmp;
+        preparing = false;
+        paused = false;
+        // player linked with setNextMediaPlayer is already started
+        if (!mediaPlayer.isPlaying()) {
+            mediaPlayer.start();
+        }
+        onTrackStarted(0);
+        return true;
+    }
+
+    /**
+     * Prepare standby players for neighbour tracks of current one and link next player
+     * to current one for gapless playback.
+     */
+    private void prepareNeighbourTracks() {
+        if (preparing)
+            return;
+        if (queue.current() == null || queue.size() < 2) {
+            nextPlayer.reset();
+            previousPlayer.reset();
+            linkNextPlayer();
+            return;
+        }
+        int nextIndex = queue.nextIndex();
+        int previousIndex = queue.previousIndex();
+        prepareStandbyPlayer(nextPlayer, queue.get(nextIndex));
+        if (previousIndex == nextIndex) {
+            previousPlayer.reset();
+        } else {
+            prepareStandbyPlayer(previousPlayer, queue.get(previousIndex));
+        }
+        linkNextPlayer();
+    }
+
+    private void prepareStandbyPlayer(@NonNull StandbyPlayer standby, @NonNull MusicItem item) {
+        if (standby.item != null && standby.item.id() == item.id())
+            return;
+        if (standby.player == null) {
+            standby.player = newMediaPlayer();
+        } else {
+            standby.player.reset();
+        }
+        standby.item = item;
+        standby.prepared = false;
+        try {
+            standby.player.setDataSource(this, item.fileUri());
+            standby.player.prepareAsync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            standby.reset();
+        }
+    }
+
+    /**
+     * Let current player start next one by itself when playback completes or loop current track
+     * in {@link PlayQueue#REPEAT_ONE} mode.
+     */
+    private void linkNextPlayer() {
+        if (preparing || queue.current() == null)
+            return;
+        boolean repeatOne = queue.repeatMode() == PlayQueue.REPEAT_ONE;
+        mediaPlayer.setLooping(repeatOne);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+            return;
+        mediaPlayer.setNextMediaPlayer(nextPlayer.prepared && !repeatOne ? nextPlayer.player : null);
     }
 
     private void startCurrentTrack() {
@@ -121,112 +573,310 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
             paused = false;
         }
         mediaPlayer.reset();
+        loadedItem = null;
+        if (queue.current().id() != resumeTrackId) {
+            // other track than restored one is started
+            resumePosition = -1;
+        }
         try {
-            mediaPlayer.setDataSource(this, items.get(playingIndex).fileUri());
+            mediaPlayer.setDataSource(this, queue.current().fileUri());
             mediaPlayer.prepareAsync();
+            loadedItem = queue.current();
             preparing = true;
+            skipCoordinator.onPrepareStarted(SystemClock.uptimeMillis());
+            updatePositionTracking();
         } catch (IOException e) {
             e.printStackTrace();
+            onTrackFailed();
         }
     }
 
-    private void addNewTracks(Intent intent) {
-        MusicItem playingItem = null;
-        if (playingIndex != -1)
-            playingItem = items.get(playingIndex);
-        items.clear();
-        Parcelable[] items = intent.getParcelableArrayExtra(EXTRA_FILE_URIS);
-        for (Parcelable item : items) {
-            if (item instanceof MusicItem)
-                this.items.add((MusicItem) item);
-        }
-        if (playingItem == null) {
-            playingIndex = -1;
-        } else {
-            playingIndex = this.items.indexOf(playingItem);
+    /**
+     * Skip track that current player failed to play. Playback stops if all tracks of queue
+     * failed in a row.
+     */
+    private void onTrackFailed() {
+        mediaPlayer.reset();
+        preparing = false;
+        loadedItem = null;
+        resumePosition = -1;
+        skipCoordinator.onPrepareCancelled();
+        updatePositionTracking();
+        if (++failedTracks >= queue.size()) {
+            failedTracks = 0;
+            publishState(false, 0);
+            return;
         }
-        if (playingIndex == -1 && mediaPlayer.isPlaying()) {
+        // posted to avoid deep recursion when many tracks fail at once
+        queue.currentIndex(queue.nextIndex());
+        playbackHandler.removeMessages(MSG_PLAY_TARGET);
+        playbackHandler.sendEmptyMessage(MSG_PLAY_TARGET);
+    }
+
+    /**
+     * Load latest library snapshot into queue if it's newer than loaded one.
+     * @param version version of library known by caller
+     */
+    private void updateTracks(int version) {
+        if (version <= libraryVersion)
+            return;
+        MusicLibrary.Snapshot snapshot = MusicLibrary.get().snapshot();
+        libraryVersion = snapshot.version();
+        queue.replace(snapshot.tracks());
+        if (queue.current() == null && mediaPlayer.isPlaying()) {
             mediaPlayer.stop();
             mediaPlayer.reset();
+            loadedItem = null;
+            updatePositionTracking();
+            publishState(false, 0);
         }
+        MusicItem current = queue.current();
+        session.saveQueue(snapshot.tracks(), current == null ? -1 : current.id(), currentPosition(), isPlaybackActive());
+        prepareNeighbourTracks();
     }
 
     @Override
     public void onDestroy() {
+        unregisterReceiver(screenStateReceiver);
+        screenStateReceiver = null;
         audioWidget.controller().onControlsClickListener(null);
         audioWidget.controller().onWidgetStateChangedListener(null);
         audioWidget.hide();
         audioWidget = null;
-        if (mediaPlayer.isPlaying()) {
-            mediaPlayer.stop();
-        }
-        mediaPlayer.reset();
-        mediaPlayer.release();
-        mediaPlayer = null;
-        stopTrackingPosition();
-        cropCircleTransformation = null;
-        preferences = null;
+        mainHandler.removeCallbacksAndMessages(null);
+        // pending commands are useless now, player just has to be released
+        playbackHandler.removeCallbacksAndMessages(null);
+        playbackHandler.obtainMessage(MSG_RELEASE, widgetRemoved ? 1 : 0, 0).sendToTarget();
+        coverCache.clear();
+        coverCache = null;
+        positionStore.flush();
+        positionStore = null;
         super.onDestroy();
     }
 
+    /**
+     * Release players and stop playback thread.
+     * @param clearSession true if saved session should be removed
+     */
+    private void release(boolean clearSession) {
+        if (session != null) {
+            if (clearSession) {
+                // user closed player, so there is nothing to resume
+                session.clear();
+            } else {
+                checkpointSession();
+            }
+        }
+        if (mediaPlayer != null) {
+            if (mediaPlayer.isPlaying()) {
+                mediaPlayer.stop();
+            }
+            mediaPlayer.reset();
+            mediaPlayer.release();
+            mediaPlayer = null;
+            loadedItem = null;
+        }
+        nextPlayer.release();
+        previousPlayer.release();
+        trackingPosition = false;
+        Looper.myLooper().quit();
+    }
+
     @Override
     public void onPrepared(MediaPlayer mp) {
+        if (mp != mediaPlayer) {
+            StandbyPlayer standby = standbyPlayerOf(mp);
+            if (standby != null) {
+                standby.prepared = true;
+                if (standby == nextPlayer) {
+                    linkNextPlayer();
+                }
+            }
+            return;
+        }
         preparing = false;
+        long latency = skipCoordinator.onPrepared(SystemClock.uptimeMillis());
+        if (latency != -1 && BuildConfig.DEBUG) {
+            Log.d(MusicService.class.getSimpleName(), "Prepared " + loadedItem.fileUri() + " in " + latency + " ms");
+        }
+        if (resumePosition != -1) {
+            resumeSession();
+            return;
+        }
         mediaPlayer.start();
-        if (!audioWidget.isShown()) {
-            audioWidget.show(preferences.getInt(KEY_POSITION_X, 100), preferences.getInt(KEY_POSITION_Y, 100));
-        }
-        audioWidget.controller().start();
-        audioWidget.controller().position(0);
-        audioWidget.controller().duration(mediaPlayer.getDuration());
-        stopTrackingPosition();
-        startTrackingPosition();
-        int size = getResources().getDimensionPixelSize(R.dimen.cover_size);
-        Glide.with(this)
-                .load(items.get(playingIndex).albumArtUri())
-                .asBitmap()
-                .override(size, size)
-                .centerCrop()
-                .transform(cropCircleTransformation)
-                .into(new SimpleTarget<Bitmap>() {
-                    @Override
-                    public void onResourceReady(Bitmap resource, GlideAnimation<? super Bitmap> glideAnimation) {
-                        if (audioWidget != null) {
-                            audioWidget.controller().albumCoverBitmap(resource);
-                        }
-                    }
-
-                    @Override
-                    public void onLoadFailed(Exception e, Drawable errorDrawable) {
-                        super.onLoadFailed(e, errorDrawable);
-                        if (audioWidget != null) {
-                            audioWidget.controller().albumCover(null);
-                        }
-                    }
-                });
+        onTrackStarted(0);
     }
 
-    @Override
-    public void onCompletion(MediaPlayer mp) {
-        if (playingIndex == -1) {
+    private void resumeSession() {
+        int position = resumePosition;
+        resumePosition = -1;
+        resumeTrackId = -1;
+        mediaPlayer.seekTo(position);
+        if (resumePaused) {
+            paused = true;
+        } else {
+            mediaPlayer.start();
+        }
+        onTrackStarted(position);
+    }
+
+    /**
+     * Report started track to widget and prepare neighbour tracks.
+     * @param position position track started from
+     */
+    private void onTrackStarted(int position) {
+        failedTracks = 0;
+        publishState(true, position);
+        // new track starts from given position, so restart ticks
+        trackingPosition = false;
+        updatePositionTracking();
+        prepareNeighbourTracks();
+    }
+
+    /**
+     * Post snapshot of player state to main thread.
+     * @param trackStarted true if current track was just started
+     * @param position playback position
+     */
+    private void publishState(boolean trackStarted, int position) {
+        MusicItem current = queue.current();
+        MusicItem nextTrack = null;
+        MusicItem previousTrack = null;
+        int duration = 0;
+        if (trackStarted) {
+            duration = mediaPlayer.getDuration();
+            if (queue.size() > 1) {
+                nextTrack = queue.get(queue.nextIndex());
+                previousTrack = queue.get(queue.previousIndex());
+            }
+        }
+        boolean playing = current != null && mediaPlayer.isPlaying();
+        PlayerState state = new PlayerState(current, playing, position, trackStarted, duration, nextTrack, previousTrack);
+        mainHandler.obtainMessage(MSG_PLAYER_STATE, state).sendToTarget();
+    }
+
+    /**
+     * Handle update from playback thread on main thread.
+     */
+    private void handleUpdate(@NonNull Message msg) {
+        if (audioWidget == null)
+            return;
+        switch (msg.what) {
+            case MSG_PLAYER_STATE:
+                applyPlayerState((PlayerState) msg.obj);
+                break;
+            case MSG_POSITION:
+                audioWidget.controller().position(msg.arg1);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown update: " + msg.what);
+        }
+    }
+
+    private void applyPlayerState(@NonNull PlayerState state) {
+        displayedTrack = state.track;
+        if (state.track == null) {
             audioWidget.controller().stop();
+            updateProgressVisibility();
             return;
         }
-        playingIndex++;
-        if (playingIndex >= items.size()) {
-            playingIndex = 0;
-            if (items.size() == 0) {
-                audioWidget.controller().stop();
-                return;
+        if (state.trackStarted && !audioWidget.isShown()) {
+            audioWidget.show(positionStore.x(), positionStore.y());
+        }
+        if (state.playing) {
+            audioWidget.controller().start();
+        } else {
+            audioWidget.controller().pause();
+        }
+        audioWidget.controller().position(state.position);
+        if (state.trackStarted) {
+            audioWidget.controller().duration(state.duration);
+            coverCache.load(state.track.albumArtUri(), this);
+            if (state.nextTrack != null) {
+                coverCache.prefetch(state.nextTrack.albumArtUri());
+                coverCache.prefetch(state.previousTrack.albumArtUri());
             }
         }
-        startCurrentTrack();
+        updateProgressVisibility();
+    }
+
+    @Override
+    public void onCoverLoaded(@NonNull Uri uri, @Nullable Bitmap cover) {
+        // cover of track that is not displayed anymore stays in cache only
+        if (audioWidget == null || displayedTrack == null || !uri.equals(displayedTrack.albumArtUri()))
+            return;
+        if (cover == null) {
+            audioWidget.controller().albumCover(null);
+        } else {
+            audioWidget.controller().albumCoverBitmap(cover);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (coverCache != null) {
+            coverCache.trimMemory(level);
+        }
+    }
+
+    @Nullable
+    private StandbyPlayer standbyPlayerOf(MediaPlayer mp) {
+        if (mp == nextPlayer.player) {
+            return nextPlayer;
+        }
+        if (mp == previousPlayer.player) {
+            return previousPlayer;
+        }
+        return null;
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        if (mp != mediaPlayer) {
+            return;
+        }
+        if (queue.current() == null) {
+            updatePositionTracking();
+            publishState(false, 0);
+            return;
+        }
+        int index;
+        if (playbackHandler.hasMessages(MSG_PLAY_TARGET)) {
+            // loaded track ended while burst of skips settles, so play its target right away
+            playbackHandler.removeMessages(MSG_PLAY_TARGET);
+            index = queue.currentIndex();
+        } else {
+            index = queue.completionIndex();
+        }
+        stopStaleNextPlayer(queue.get(index));
+        playTrack(index);
+    }
+
+    /**
+     * Stop next player started by completed player if it isn't prepared for track that
+     * should be played next.
+     * @param item track that should be played next
+     */
+    private void stopStaleNextPlayer(@NonNull MusicItem item) {
+        if (nextPlayer.player == null || nextPlayer.isPreparedFor(item) || !nextPlayer.player.isPlaying())
+            return;
+        nextPlayer.player.pause();
+        nextPlayer.reset();
     }
 
     @Override
     public boolean onError(MediaPlayer mp, int what, int extra) {
-        preparing = true;
-        return false;
+        if (mp != mediaPlayer) {
+            StandbyPlayer standby = standbyPlayerOf(mp);
+            if (standby != null) {
+                standby.reset();
+                linkNextPlayer();
+            }
+            return true;
+        }
+        onTrackFailed();
+        return true;
     }
 
     @Override
@@ -240,40 +890,24 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
 
     @Override
     public void onPreviousClicked() {
-        if (items.size() == 0)
-            return;
-        playingIndex--;
-        if (playingIndex < 0) {
-            playingIndex = items.size() - 1;
-        }
-        startCurrentTrack();
+        requestSkip(-1);
     }
 
     @Override
     public boolean onPlayPauseClicked() {
-        if (mediaPlayer.isPlaying()) {
-            stopTrackingPosition();
-            mediaPlayer.pause();
-            audioWidget.controller().start();
-            paused = true;
-        } else {
-            startTrackingPosition();
-            audioWidget.controller().pause();
-            mediaPlayer.start();
-            paused = false;
-        }
+        playbackHandler.sendEmptyMessage(MSG_PLAY_PAUSE);
         return true;
     }
 
     @Override
     public void onNextClicked() {
-        if (items.size() == 0)
-            return;
-        playingIndex++;
-        if (playingIndex >= items.size()) {
-            playingIndex = 0;
-        }
-        startCurrentTrack();
+        requestSkip(1);
+    }
+
+    private void requestSkip(int offset) {
+        pendingSkip.addAndGet(offset);
+        playbackHandler.removeMessages(MSG_SKIP);
+        playbackHandler.sendEmptyMessage(MSG_SKIP);
     }
 
     @Override
@@ -281,40 +915,146 @@ public class MusicService extends Service implements MediaPlayer.OnPreparedListe
 
     }
 
-    private void startTrackingPosition() {
-        timer = new Timer("MusicService Timer");
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                AudioWidget widget = audioWidget;
-                MediaPlayer player = mediaPlayer;
-                if (widget != null) {
-                    widget.controller().position(player.getCurrentPosition());
-                }
-            }
-        }, UPDATE_INTERVAL, UPDATE_INTERVAL);
+    /**
+     * Report visibility of progress to playback thread. Progress is visible only while widget
+     * is shown and collapsed (progress is drawn by collapsed button only) and screen is on.
+     */
+    private void updateProgressVisibility() {
+        boolean visible = screenOn && !widgetExpanded && audioWidget != null && audioWidget.isShown();
+        if (visible == progressVisible)
+            return;
+        progressVisible = visible;
+        playbackHandler.obtainMessage(MSG_PROGRESS_VISIBILITY, visible ? 1 : 0, 0).sendToTarget();
+    }
+
+    /**
+     * Start or stop position updates. Position is tracked only while someone can see it:
+     * track is playing and progress is visible (see {@link #updateProgressVisibility()}).
+     * While track plays with hidden progress, only rare session checkpoints are scheduled.
+     * Otherwise no callbacks are scheduled at all.
+     */
+    private void updatePositionTracking() {
+        checkpointSession();
+        boolean playing = !preparing && mediaPlayer != null && mediaPlayer.isPlaying();
+        if (!playing) {
+            playbackHandler.removeMessages(MSG_CHECKPOINT);
+        } else if (!playbackHandler.hasMessages(MSG_CHECKPOINT)) {
+            playbackHandler.sendEmptyMessageDelayed(MSG_CHECKPOINT, CHECKPOINT_INTERVAL);
+        }
+        boolean track = showingProgress && playing;
+        if (track == trackingPosition)
+            return;
+        trackingPosition = track;
+        playbackHandler.removeMessages(MSG_UPDATE_POSITION);
+        if (track) {
+            updatePosition();
+        }
     }
 
-    private void stopTrackingPosition() {
-        if (timer == null)
+    private void updatePosition() {
+        int position = mediaPlayer.getCurrentPosition();
+        mainHandler.obtainMessage(MSG_POSITION, position, 0).sendToTarget();
+        session.checkpoint(loadedItem.id(), position, true);
+        // tick on whole seconds of playback
+        playbackHandler.sendEmptyMessageDelayed(MSG_UPDATE_POSITION, UPDATE_INTERVAL - position % UPDATE_INTERVAL);
+    }
+
+    /**
+     * Save current track, position and playback state to session checkpoint.
+     */
+    private void checkpointSession() {
+        if (mediaPlayer == null)
             return;
-        timer.cancel();
-        timer.purge();
-        timer = null;
+        // loaded track keeps playing while burst of skips settles
+        MusicItem current = loadedItem != null ? loadedItem : queue.current();
+        session.checkpoint(current == null ? -1 : current.id(), currentPosition(), isPlaybackActive());
+    }
+
+    private int currentPosition() {
+        if (preparing)
+            return resumePosition == -1 ? 0 : resumePosition;
+        return loadedItem == null ? 0 : mediaPlayer.getCurrentPosition();
+    }
+
+    /**
+     * Check if track is playing or is being prepared to play.
+     */
+    private boolean isPlaybackActive() {
+        if (preparing)
+            return resumePosition == -1 || !resumePaused;
+        return mediaPlayer.isPlaying();
     }
 
     @Override
     public void onWidgetStateChanged(@NonNull AudioWidget.State state) {
         if (state == AudioWidget.State.REMOVED) {
+            widgetRemoved = true;
+            positionStore.flush();
             stopSelf();
+            return;
         }
+        widgetExpanded = state == AudioWidget.State.EXPANDED;
+        updateProgressVisibility();
     }
 
     @Override
     public void onWidgetPositionChanged(int cx, int cy) {
-        preferences.edit()
-                .putInt(KEY_POSITION_X, cx)
-                .putInt(KEY_POSITION_Y, cy)
-                .apply();
+        positionStore.update(cx, cy);
+    }
+
+    /**
+     * Snapshot of player state posted from playback thread to main thread.
+     */
+    private static final class PlayerState {
+
+        private final MusicItem track;
+        private final boolean playing;
+        private final int position;
+        private final boolean trackStarted;
+        private final int duration;
+        private final MusicItem nextTrack;
+        private final MusicItem previousTrack;
+
+        PlayerState(@Nullable MusicItem track, boolean playing, int position, boolean trackStarted, int duration,
+                    @Nullable MusicItem nextTrack, @Nullable MusicItem previousTrack) {
+            this.track = track;
+            this.playing = playing;
+            this.position = position;
+            this.trackStarted = trackStarted;
+            this.duration = duration;
+            this.nextTrack = nextTrack;
+            this.previousTrack = previousTrack;
+        }
+    }
+
+    /**
+     * Media player prepared (or being prepared) for neighbour track of current one.
+     */
+    private static final class StandbyPlayer {
+
+        private MediaPlayer player;
+        private MusicItem item;
+        private boolean prepared;
+
+        boolean isPreparedFor(@NonNull MusicItem item) {
+            return prepared && this.item != null && this.item.id() == item.id();
+        }
+
+        void reset() {
+            if (player != null && item != null) {
+                player.reset();
+            }
+            item = null;
+            prepared = false;
+        }
+
+        void release() {
+            if (player != null) {
+                player.release();
+                player = null;
+            }
+            item = null;
+            prepared = false;
+        }
     }
 }
@@ -0,0 +1,102 @@
+package com.cleveroad.audiowidget.example;
+
+/**
+ * Seeded pseudo-random permutation of range [0, size) computed on the fly. Permutation is
+ * a balanced Feistel network over the smallest power of four range covering size, values outside
+ * of range are walked through the network again (cycle walking). Both permutation and its inverse
+ * take expected constant time and need no memory, so huge ranges can be shuffled without
+ * materializing shuffled copy.
+ */
+final class Permutation {
+
+    private static final int ROUNDS = 4;
+
+    private final int size;
+    private final long seed;
+    private final int halfBits;
+    private final long halfMask;
+
+    /**
+     * Create new permutation.
+     * @param size size of range
+     * @param seed seed of permutation, same seed and size always give same permutation
+     */
+    Permutation(int size, long seed) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be non-negative: " + size);
+        }
+        this.size = size;
+        this.seed = seed;
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get value at given position of permutation.
+     * @param index position in range [0, size)
+     * @return value in range [0, size)
+     */
+    int get(int index) {
+        checkRange(index);
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+        return (int) value;
+    }
+
+    /**
+     * Get position of value in permutation.
+     * @param value value in range [0, size)
+     * @return position in range [0, size)
+     */
+    int indexOf(int value) {
+        checkRange(value);
+        long index = value;
+        do {
+            index = decrypt(index);
+        } while (index >= size);
+        return (int) index;
+    }
+
+    private void checkRange(int value) {
+        if (value < 0 || value >= size) {
+            throw new IndexOutOfBoundsException("Value: " + value + ", size: " + size);
+        }
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long tmp = right;
+            right = left ^ round(right, round);
+            left = tmp;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long tmp = left;
+            left = right ^ round(left, round);
+            right = tmp;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long round(long value, int round) {
+        long h = (seed + round) * 0x9E3779B97F4A7C15L ^ value * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return h & halfMask;
+    }
+}
@@ -0,0 +1,251 @@
+package com.cleveroad.audiowidget.example;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Queue of tracks with current track. Tracks are looked up by their {@link MusicItem#id()}
+ * in hash index, so finding track, current, next and previous tracks takes constant time.
+ * <p>
+ * Queue shares tracks array of {@link MusicLibrary} snapshot. Index is built lazily on first
+ * lookup after queue replacement, so replacing queue costs only search of current track.
+ * <p>
+ * In shuffle mode tracks are played in order of seeded {@link Permutation} of queue, so neither
+ * shuffled copy of queue nor history of played tracks is stored: next and previous tracks are
+ * found by position of current track in permutation. Permutation keeps its seed when queue is
+ * replaced, so order stays stable while tracks are not changed.
+ */
+class PlayQueue {
+
+    /**
+     * Queue is repeated from start after last track.
+     */
+    static final int REPEAT_ALL = 0;
+    /**
+     * Current track is repeated when it completes. Explicit skips still move through queue.
+     */
+    static final int REPEAT_ONE = 1;
+
+    private static final MusicItem[] EMPTY = new MusicItem[0];
+
+    private final Random random = new Random();
+    private MusicItem[] items = EMPTY;
+    private int currentIndex = -1;
+    private int repeatMode = REPEAT_ALL;
+    private boolean shuffle;
+    private long shuffleSeed;
+    /**
+     * Play order in shuffle mode, created lazily.
+     */
+    private Permutation playOrder;
+
+    /**
+     * Open addressing hash table: track ids and their positions in queue plus one (0 means empty slot).
+     */
+    private long[] indexKeys;
+    private int[] indexValues;
+    private boolean indexValid;
+
+    public int size() {
+        return items.length;
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    @NonNull
+    public MusicItem get(int index) {
+        return items[index];
+    }
+
+    /**
+     * Get index of current track.
+     * @return index of current track or -1 if there is no current track
+     */
+    public int currentIndex() {
+        return currentIndex;
+    }
+
+    /**
+     * Get current track.
+     * @return current track or null
+     */
+    @Nullable
+    public MusicItem current() {
+        return currentIndex == -1 ? null : items[currentIndex];
+    }
+
+    /**
+     * Set current track.
+     * @param index index of track or -1 to clear current track
+     */
+    public void currentIndex(int index) {
+        if (index < -1 || index >= items.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + items.length);
+        }
+        this.currentIndex = index;
+    }
+
+    public int repeatMode() {
+        return repeatMode;
+    }
+
+    /**
+     * Set repeat mode.
+     * @param repeatMode {@link #REPEAT_ALL} or {@link #REPEAT_ONE}
+     */
+    public void repeatMode(int repeatMode) {
+        if (repeatMode != REPEAT_ALL && repeatMode != REPEAT_ONE) {
+            throw new IllegalArgumentException("Unknown repeat mode: " + repeatMode);
+        }
+        this.repeatMode = repeatMode;
+    }
+
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    /**
+     * Enable or disable shuffle mode. Each enabling creates new play order.
+     * @param shuffle true to play tracks in random order
+     */
+    public void shuffle(boolean shuffle) {
+        if (this.shuffle == shuffle)
+            return;
+        this.shuffle = shuffle;
+        if (shuffle) {
+            shuffleSeed = random.nextLong();
+        }
+        playOrder = null;
+    }
+
+    /**
+     * Get index of track following current one in play order. Queue is looped.
+     * @return index of next track or -1 if queue is empty
+     */
+    public int nextIndex() {
+        return offsetIndex(1);
+    }
+
+    /**
+     * Get index of track preceding current one in play order. Queue is looped.
+     * @return index of previous track or -1 if queue is empty
+     */
+    public int previousIndex() {
+        return offsetIndex(-1);
+    }
+
+    /**
+     * Get index of track to be played when current one completes, according to repeat mode.
+     * @return index of track or -1 if queue is empty
+     */
+    public int completionIndex() {
+        if (repeatMode == REPEAT_ONE && currentIndex != -1)
+            return currentIndex;
+        return nextIndex();
+    }
+
+    /**
+     * Get index of track located given number of tracks away from current one in play order.
+     * Queue is looped.
+     * @param offset number of tracks, negative to move backwards
+     * @return index of track or -1 if queue is empty
+     */
+    public int offsetIndex(int offset) {
+        if (items.length == 0)
+            return -1;
+        int from = currentIndex;
+        if (from != -1 && shuffle) {
+            from = playOrder().indexOf(from);
+        }
+        // without current track moving forward starts before first track, backward - from first one
+        if (from == -1 && offset < 0) {
+            from = 0;
+        }
+        int position = (from + offset % items.length) % items.length;
+        if (position < 0) {
+            position += items.length;
+        }
+        return shuffle ? playOrder().get(position) : position;
+    }
+
+    @NonNull
+    private Permutation playOrder() {
+        if (playOrder == null || playOrder.size() != items.length) {
+            playOrder = new Permutation(items.length, shuffleSeed);
+        }
+        return playOrder;
+    }
+
+    /**
+     * Find track in queue.
+     * @param id track id
+     * @return index of track or -1 if queue doesn't contain track
+     */
+    public int indexOf(long id) {
+        if (!indexValid) {
+            buildIndex();
+        }
+        int mask = indexKeys.length - 1;
+        for (int slot = hash(id) & mask; indexValues[slot] != 0; slot = (slot + 1) & mask) {
+            if (indexKeys[slot] == id) {
+                return indexValues[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replace tracks in queue. Current track stays current if new queue contains it.
+     * @param tracks new tracks, array is not copied and must not be modified
+     */
+    public void replace(@NonNull MusicItem[] tracks) {
+        MusicItem current = current();
+        int currentIndex = -1;
+        if (current != null) {
+            long id = current.id();
+            for (int i = 0; i < tracks.length; i++) {
+                if (tracks[i].id() == id) {
+                    currentIndex = i;
+                    break;
+                }
+            }
+        }
+        this.items = tracks;
+        this.currentIndex = currentIndex;
+        indexValid = false;
+    }
+
+    private void buildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(4, items.length * 2 - 1)) << 1;
+        if (indexKeys == null || indexKeys.length != capacity) {
+            indexKeys = new long[capacity];
+            indexValues = new int[capacity];
+        } else {
+            Arrays.fill(indexValues, 0);
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < items.length; i++) {
+            long id = items[i].id();
+            int slot = hash(id) & mask;
+            while (indexValues[slot] != 0 && indexKeys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            // duplicates keep first position
+            if (indexValues[slot] == 0) {
+                indexKeys[slot] = id;
+                indexValues[slot] = i + 1;
+            }
+        }
+        indexValid = true;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,231 @@
+package com.cleveroad.audiowidget.example;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary snapshot of playback session: queue, current track and playback position.
+ * Allows restarted service to restore playback without loading library from MediaStore.
+ * <p>
+ * File consists of fixed size checkpoint (current track id, position and playing flag) followed
+ * by queue. Queue is rewritten only when it's replaced. Checkpoint is memory-mapped and updated
+ * in place, so frequent position updates cost few memory stores: dirty page is flushed by system
+ * and survives death of process.
+ */
+class PlaybackSession {
+
+    private static final int MAGIC = 0x4D425331; // "MBS1"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CHECKPOINT_OFFSET = 8;
+    private static final int CHECKPOINT_TRACK_ID = 0;
+    private static final int CHECKPOINT_POSITION = 8;
+    private static final int CHECKPOINT_FLAGS = 12;
+    private static final int CHECKPOINT_SIZE = 16;
+    private static final int FLAG_PLAYING = 1;
+
+    private final File file;
+    private MappedByteBuffer checkpoint;
+
+    PlaybackSession(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read saved session.
+     * @return saved session or null if there is no valid session
+     */
+    @Nullable
+    State restore() {
+        if (!file.exists())
+            return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown session format");
+            }
+            long trackId = in.readLong();
+            int position = in.readInt();
+            int flags = in.readInt();
+            int count = in.readInt();
+            if (count < 0 || count > file.length()) {
+                throw new IOException("Corrupted session");
+            }
+            MusicItem[] tracks = new MusicItem[count];
+            for (int i = 0; i < count; i++) {
+                tracks[i] = new MusicItem()
+                        .id(in.readLong())
+                        .title(readString(in))
+                        .album(readString(in))
+                        .artist(readString(in))
+                        .duration(in.readLong())
+                        .albumArtUri(readUri(in))
+                        .fileUri(readUri(in));
+            }
+            mapCheckpoint();
+            return new State(tracks, trackId, position, (flags & FLAG_PLAYING) != 0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            clear();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Save new queue together with checkpoint.
+     * @param tracks tracks of queue
+     * @param trackId id of current track or -1
+     * @param position playback position of current track
+     * @param playing true if current track is playing
+     */
+    void saveQueue(@NonNull MusicItem[] tracks, long trackId, int position, boolean playing) {
+        checkpoint = null;
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(trackId);
+            out.writeInt(position);
+            out.writeInt(playing ? FLAG_PLAYING : 0);
+            out.writeInt(tracks.length);
+            for (MusicItem track : tracks) {
+                out.writeLong(track.id());
+                writeString(out, track.title());
+                writeString(out, track.album());
+                writeString(out, track.artist());
+                out.writeLong(track.duration());
+                writeUri(out, track.albumArtUri());
+                writeUri(out, track.fileUri());
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Can't replace session file");
+            }
+            mapCheckpoint();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(out);
+            temp.delete();
+            clear();
+        }
+    }
+
+    /**
+     * Update checkpoint of saved session. Does nothing if queue wasn't saved yet.
+     * @param trackId id of current track or -1
+     * @param position playback position of current track
+     * @param playing true if current track is playing
+     */
+    void checkpoint(long trackId, int position, boolean playing) {
+        if (checkpoint == null)
+            return;
+        checkpoint.putLong(CHECKPOINT_TRACK_ID, trackId);
+        checkpoint.putInt(CHECKPOINT_POSITION, position);
+        checkpoint.putInt(CHECKPOINT_FLAGS, playing ? FLAG_PLAYING : 0);
+    }
+
+    /**
+     * Remove saved session.
+     */
+    void clear() {
+        checkpoint = null;
+        file.delete();
+    }
+
+    private void mapCheckpoint() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // mapping stays valid after channel is closed
+            checkpoint = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, CHECKPOINT_OFFSET, CHECKPOINT_SIZE);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeString(@NonNull DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readString(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeUri(@NonNull DataOutputStream out, @Nullable Uri uri) throws IOException {
+        writeString(out, uri == null ? null : uri.toString());
+    }
+
+    @Nullable
+    private static Uri readUri(@NonNull DataInputStream in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : Uri.parse(value);
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Restored session.
+     */
+    static final class State {
+
+        private final MusicItem[] tracks;
+        private final long trackId;
+        private final int position;
+        private final boolean playing;
+
+        private State(@NonNull MusicItem[] tracks, long trackId, int position, boolean playing) {
+            this.tracks = tracks;
+            this.trackId = trackId;
+            this.position = position;
+            this.playing = playing;
+        }
+
+        @NonNull
+        MusicItem[] tracks() {
+            return tracks;
+        }
+
+        long trackId() {
+            return trackId;
+        }
+
+        int position() {
+            return position;
+        }
+
+        boolean playing() {
+            return playing;
+        }
+    }
+}
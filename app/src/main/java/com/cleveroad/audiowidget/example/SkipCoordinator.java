@@ -0,0 +1,86 @@
+package com.cleveroad.audiowidget.example;
+
+/**
+ * Coordinator of track skips. First skip is handled immediately, but skips that follow it closely
+ * form a burst: only final target of burst is prepared once user stops skipping. Time to wait
+ * for the end of burst follows measured prepare latency, since waiting longer than preparing
+ * takes doesn't save anything.
+ * <p>
+ * All times are in milliseconds of the same monotonic clock.
+ */
+class SkipCoordinator {
+
+    /**
+     * Skips closer to each other than this form a burst.
+     */
+    private static final long BURST_WINDOW = 500;
+    private static final long MIN_SETTLE_DELAY = 80;
+    private static final long MAX_SETTLE_DELAY = 400;
+    /**
+     * Weight of new measurement in average prepare latency.
+     */
+    private static final float LATENCY_SMOOTHING = 0.25f;
+
+    private long lastSkipTime = Long.MIN_VALUE / 2;
+    private long prepareStartTime = -1;
+    private float prepareLatency = -1;
+
+    /**
+     * Register skip.
+     * @param now current time
+     * @return true if skip continues burst of skips, so preparing its target should be deferred
+     * by {@link #settleDelay()}
+     */
+    boolean onSkip(long now) {
+        boolean burst = now - lastSkipTime < BURST_WINDOW;
+        lastSkipTime = now;
+        return burst;
+    }
+
+    /**
+     * Get delay after last skip of burst before its target is prepared.
+     * @return delay in milliseconds
+     */
+    long settleDelay() {
+        if (prepareLatency < 0)
+            return MAX_SETTLE_DELAY;
+        return Math.max(MIN_SETTLE_DELAY, Math.min(MAX_SETTLE_DELAY, (long) prepareLatency));
+    }
+
+    /**
+     * Called when player starts preparing track.
+     * @param now current time
+     */
+    void onPrepareStarted(long now) {
+        prepareStartTime = now;
+    }
+
+    /**
+     * Called when preparing was cancelled or failed.
+     */
+    void onPrepareCancelled() {
+        prepareStartTime = -1;
+    }
+
+    /**
+     * Called when player finished preparing track.
+     * @param now current time
+     * @return prepare latency of track or -1 if preparing wasn't tracked
+     */
+    long onPrepared(long now) {
+        if (prepareStartTime < 0)
+            return -1;
+        long latency = now - prepareStartTime;
+        prepareStartTime = -1;
+        prepareLatency = prepareLatency < 0 ? latency : prepareLatency + (latency - prepareLatency) * LATENCY_SMOOTHING;
+        return latency;
+    }
+
+    /**
+     * Get average prepare latency.
+     * @return latency in milliseconds or -1 if nothing was measured yet
+     */
+    float prepareLatency() {
+        return prepareLatency;
+    }
+}
@@ -0,0 +1,75 @@
+package com.cleveroad.audiowidget.example;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+/**
+ * Persistent position of widget. Positions reported while user moves widget around are coalesced:
+ * position is written to preferences only after it stays unchanged for {@link #WRITE_DELAY}
+ * or when {@link #flush()} is called. Position equal to saved one is never written.
+ */
+class WidgetPositionStore {
+
+    private static final String KEY_POSITION_X = "position_x";
+    private static final String KEY_POSITION_Y = "position_y";
+    private static final long WRITE_DELAY = 1000;
+
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler();
+    private final Runnable flushAction = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private int savedX;
+    private int savedY;
+    private int x;
+    private int y;
+
+    WidgetPositionStore(@NonNull SharedPreferences preferences, int defaultX, int defaultY) {
+        this.preferences = preferences;
+        this.savedX = this.x = preferences.getInt(KEY_POSITION_X, defaultX);
+        this.savedY = this.y = preferences.getInt(KEY_POSITION_Y, defaultY);
+    }
+
+    int x() {
+        return x;
+    }
+
+    int y() {
+        return y;
+    }
+
+    /**
+     * Update position of widget. Position will be saved after delay.
+     * @param x center x
+     * @param y center y
+     */
+    void update(int x, int y) {
+        if (this.x == x && this.y == y)
+            return;
+        this.x = x;
+        this.y = y;
+        handler.removeCallbacks(flushAction);
+        if (x != savedX || y != savedY) {
+            handler.postDelayed(flushAction, WRITE_DELAY);
+        }
+    }
+
+    /**
+     * Write pending position to preferences immediately.
+     */
+    void flush() {
+        handler.removeCallbacks(flushAction);
+        if (x == savedX && y == savedY)
+            return;
+        preferences.edit()
+                .putInt(KEY_POSITION_X, x)
+                .putInt(KEY_POSITION_Y, y)
+                .apply();
+        savedX = x;
+        savedY = y;
+    }
+}
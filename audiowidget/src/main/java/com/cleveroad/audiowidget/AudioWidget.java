@@ -2,8 +2,10 @@ package com.cleveroad.audiowidget;
 
 import android.animation.Animator;
 import android.animation.ValueAnimator;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
@@ -14,16 +16,22 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Vibrator;
 import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.KeyCharacterMap;
 import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.animation.AccelerateDecelerateInterpolator;
 
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Audio widget implementation.
@@ -37,9 +45,11 @@ public class AudioWidget {
     private final PlayPauseButton playPauseButton;
 
     /**
-     * Expanded widget style view.
+     * Expanded widget style view. Can be released on critical memory pressure while widget
+     * is collapsed and recreated on next expand.
      */
-    private final ExpandCollapseWidget expandCollapseWidget;
+    @Nullable
+    private ExpandCollapseWidget expandCollapseWidget;
 
     /**
      * Remove widget view.
@@ -60,9 +70,11 @@ public class AudioWidget {
     private final Vibrator vibrator;
     private final Handler handler;
     private final Point screenSize;
+    private boolean hasNavigationBar;
+    private int navigationBarHeight;
     private final Context context;
     private final TouchManager playPauseButtonManager;
-    private final TouchManager expandedWidgetManager;
+    private TouchManager expandedWidgetManager;
     private final TouchManager.BoundsChecker ppbToExpBoundsChecker;
     private final TouchManager.BoundsChecker expToPpbBoundsChecker;
 
@@ -83,54 +95,88 @@ public class AudioWidget {
     private float visibleRemWidY;
     private float widgetWidth, widgetHeight, radius;
     private final OnControlsClickListenerWrapper onControlsClickListener;
+    private final Configuration configuration;
+    private final ExpandCollapseWidgetCallback expandCollapseWidgetCallback;
+    private final OnWidgetStateChangedListener expandCollapseWidgetStateListener;
+    private final SystemCallbacks systemCallbacks;
+    private final int edgeOffsetXExpanded, edgeOffsetYExpanded;
+    @Nullable
+    private Drawable albumCover;
+    private OnTrimMemoryListener onTrimMemoryListener;
+    @Nullable
+    private GestureRecorder gestureRecorder;
     private boolean shown;
     private boolean released;
     private boolean removeWidgetShown;
     private OnWidgetStateChangedListener onWidgetStateChangedListener;
+    /**
+     * Last position reported to {@link #onWidgetStateChangedListener}.
+     */
+    private int reportedX = Integer.MIN_VALUE;
+    private int reportedY = Integer.MIN_VALUE;
+
+    /**
+     * Startup phase timings. Null if tracing disabled.
+     */
+    @Nullable
+    private final StartupTrace startupTrace;
+
+    /**
+     * Frame and draw timings of animations. Null if metrics disabled.
+     */
+    @Nullable
+    private final FrameTracker frameTracker;
 
-    @SuppressWarnings("deprecation")
     private AudioWidget(@NonNull Builder builder) {
+        this(builder, builder.takePrewarmed(), null);
+    }
+
+    /**
+     * Create new widget.
+     * @param builder user defined settings
+     * @param resources prepared resources or null to prepare them now
+     * @param handler handler for delayed actions or null to create new one
+     */
+    AudioWidget(@NonNull Builder builder, @Nullable PreparedResources resources, @Nullable Handler handler) {
+        this.startupTrace = builder.startupTracing ? new StartupTrace() : null;
         this.context = builder.context.getApplicationContext();
         this.vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
-        this.handler = new Handler();
-        this.screenSize = new Point();
+        this.handler = handler != null ? handler : new Handler();
         this.removeBounds = new RectF();
         this.controller = newController();
         this.windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
-            windowManager.getDefaultDisplay().getSize(screenSize);
-        } else {
-            screenSize.x = windowManager.getDefaultDisplay().getWidth();
-            screenSize.y = windowManager.getDefaultDisplay().getHeight();
-        }
-        screenSize.y -= statusBarHeight() + navigationBarHeight();
 
-        Configuration configuration = prepareConfiguration(builder);
-        playPauseButton = new PlayPauseButton(configuration);
-        expandCollapseWidget = new ExpandCollapseWidget(configuration);
+        if (resources == null) {
+            resources = PreparedResources.prepare(context, builder, startupTrace);
+        }
+        this.configuration = resources.configuration;
+        if (builder.frameMetrics) {
+            float refreshRate = configuration.frameClock().refreshRate();
+            this.frameTracker = new FrameTracker((long) (TimeUnit.SECONDS.toNanos(1) / refreshRate));
+        } else {
+            this.frameTracker = null;
+        }
+        this.screenSize = resources.screenSize;
+        this.hasNavigationBar = resources.hasNavigationBar;
+        this.navigationBarHeight = resources.navigationBarHeight;
+        this.playbackState = configuration.playbackState();
+        this.widgetWidth = configuration.widgetWidth();
+        this.radius = configuration.radius();
+        this.widgetHeight = radius * 2;
+
+        beginPhase(startupTrace, StartupTrace.Phase.CREATE_VIEWS);
+        playPauseButton = new PlayPauseButton(configuration, resources.playPauseButtonDrawables);
         removeWidgetView = new RemoveWidgetView(configuration);
-        int offsetCollapsed = context.getResources().getDimensionPixelOffset(R.dimen.aw_edge_offset_collapsed);
-        int offsetExpanded = context.getResources().getDimensionPixelOffset(R.dimen.aw_edge_offset_expanded);
-        playPauseButtonManager = new TouchManager(playPauseButton, playPauseButton.newBoundsChecker(
-                builder.edgeOffsetXCollapsedSet ? builder.edgeOffsetXCollapsed : offsetCollapsed,
-                builder.edgeOffsetYCollapsedSet ? builder.edgeOffsetYCollapsed : offsetCollapsed
-        ))
-                .screenWidth(screenSize.x)
-                .screenHeight(screenSize.y);
-        expandedWidgetManager = new TouchManager(expandCollapseWidget, expandCollapseWidget.newBoundsChecker(
-                builder.edgeOffsetXExpandedSet ? builder.edgeOffsetXExpanded : offsetExpanded,
-                builder.edgeOffsetYExpandedSet ? builder.edgeOffsetYExpanded : offsetExpanded
-        ))
-                .screenWidth(screenSize.x)
-                .screenHeight(screenSize.y);
-
-        playPauseButtonManager.callback(new PlayPauseButtonCallback());
-        expandedWidgetManager.callback(new ExpandCollapseWidgetCallback());
-        expandCollapseWidget.onWidgetStateChangedListener(new OnWidgetStateChangedListener() {
+        if (frameTracker != null) {
+            playPauseButton.frameTracker(frameTracker);
+            removeWidgetView.frameTracker(frameTracker);
+        }
+        onControlsClickListener = new OnControlsClickListenerWrapper();
+        expandCollapseWidgetCallback = new ExpandCollapseWidgetCallback();
+        expandCollapseWidgetStateListener = new OnWidgetStateChangedListener() {
             @Override
             public void onWidgetStateChanged(@NonNull State state) {
                 if (state == State.COLLAPSED) {
-                    playPauseButton.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
                     windowManager.removeView(expandCollapseWidget);
                     playPauseButton.enableProgressChanges(true);
                 }
@@ -143,122 +189,97 @@ public class AudioWidget {
             public void onWidgetPositionChanged(int cx, int cy) {
 
             }
-        });
-        onControlsClickListener = new OnControlsClickListenerWrapper();
-        expandCollapseWidget.onControlsClickListener(onControlsClickListener);
-        ppbToExpBoundsChecker = playPauseButton.newBoundsChecker(
-                builder.edgeOffsetXExpandedSet ? builder.edgeOffsetXExpanded : offsetExpanded,
-                builder.edgeOffsetYExpandedSet ? builder.edgeOffsetYExpanded : offsetExpanded
-        );
-        expToPpbBoundsChecker = expandCollapseWidget.newBoundsChecker(
+        };
+        int offsetCollapsed = resources.offsetCollapsed;
+        int offsetExpanded = resources.offsetExpanded;
+        edgeOffsetXExpanded = builder.edgeOffsetXExpandedSet ? builder.edgeOffsetXExpanded : offsetExpanded;
+        edgeOffsetYExpanded = builder.edgeOffsetYExpandedSet ? builder.edgeOffsetYExpanded : offsetExpanded;
+        ExpandCollapseWidget expandedWidget = createExpandCollapseWidget(resources.expandCollapseWidgetDrawables);
+        endPhase(startupTrace);
+        beginPhase(startupTrace, StartupTrace.Phase.SETUP_TOUCH_MANAGERS);
+        playPauseButtonManager = new TouchManager(playPauseButton, playPauseButton.newBoundsChecker(
+                builder.edgeOffsetXCollapsedSet ? builder.edgeOffsetXCollapsed : offsetCollapsed,
+                builder.edgeOffsetYCollapsedSet ? builder.edgeOffsetYCollapsed : offsetCollapsed
+        ))
+                .screenWidth(screenSize.x)
+                .screenHeight(screenSize.y);
+        playPauseButtonManager.callback(new PlayPauseButtonCallback());
+        if (frameTracker != null) {
+            playPauseButtonManager.frameTracker(frameTracker);
+        }
+        ppbToExpBoundsChecker = playPauseButton.newBoundsChecker(edgeOffsetXExpanded, edgeOffsetYExpanded);
+        expToPpbBoundsChecker = expandedWidget.newBoundsChecker(
                 builder.edgeOffsetXCollapsedSet ? builder.edgeOffsetXCollapsed : offsetCollapsed,
                 builder.edgeOffsetYCollapsedSet ? builder.edgeOffsetYCollapsed : offsetCollapsed
         );
+        systemCallbacks = new SystemCallbacks();
+        endPhase(startupTrace);
     }
 
     /**
-     * Prepare configuration for widget.
-     * @param builder user defined settings
-     * @return new configuration for widget
+     * Create expanded widget view and its touch manager.
+     * @param drawables mutable drawables for view
+     * @return new expanded widget view
      */
-    private Configuration prepareConfiguration(@NonNull Builder builder) {
-        int darkColor = builder.darkColorSet ? builder.darkColor : VersionUtil.color(context, R.color.aw_dark);
-        int lightColor = builder.lightColorSet ? builder.lightColor : VersionUtil.color(context, R.color.aw_light);
-        int progressColor = builder.progressColorSet ? builder.progressColor : VersionUtil.color(context, R.color.aw_progress);
-        int expandColor = builder.expandWidgetColorSet ? builder.expandWidgetColor : VersionUtil.color(context, R.color.aw_expanded);
-        int crossColor = builder.crossColorSet ? builder.crossColor : VersionUtil.color(context, R.color.aw_cross_default);
-        int crossOverlappedColor = builder.crossOverlappedColorSet ? builder.crossOverlappedColor : VersionUtil.color(context, R.color.aw_cross_overlapped);
-        int shadowColor = builder.shadowColorSet ? builder.shadowColor : VersionUtil.color(context, R.color.aw_shadow);
-
-        Drawable playDrawable = builder.playDrawable != null ? builder.playDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_play);
-        Drawable pauseDrawable = builder.pauseDrawable != null ? builder.pauseDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_pause);
-        Drawable prevDrawable = builder.prevDrawable != null ? builder.prevDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_prev);
-        Drawable nextDrawable = builder.nextDrawable != null ? builder.nextDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_next);
-        Drawable playlistDrawable = builder.playlistDrawable != null ? builder.playlistDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_playlist);
-        Drawable albumDrawable = builder.defaultAlbumDrawable != null ? builder.defaultAlbumDrawable : VersionUtil.drawable(context, R.drawable.aw_ic_default_album);
-
-        int buttonPadding = builder.buttonPaddingSet ? builder.buttonPadding : context.getResources().getDimensionPixelSize(R.dimen.aw_button_padding);
-        float crossStrokeWidth = builder.crossStrokeWidthSet ? builder.crossStrokeWidth : context.getResources().getDimension(R.dimen.aw_cross_stroke_width);
-        float progressStrokeWidth = builder.progressStrokeWidthSet ? builder.progressStrokeWidth : context.getResources().getDimension(R.dimen.aw_progress_stroke_width);
-        float shadowRadius = builder.shadowRadiusSet ? builder.shadowRadius : context.getResources().getDimension(R.dimen.aw_shadow_radius);
-        float shadowDx = builder.shadowDxSet ? builder.shadowDx : context.getResources().getDimension(R.dimen.aw_shadow_dx);
-        float shadowDy = builder.shadowDySet ? builder.shadowDy : context.getResources().getDimension(R.dimen.aw_shadow_dy);
-        float bubblesMinSize = builder.bubblesMinSizeSet ? builder.bubblesMinSize : context.getResources().getDimension(R.dimen.aw_bubbles_min_size);
-        float bubblesMaxSize = builder.bubblesMaxSizeSet ? builder.bubblesMaxSize : context.getResources().getDimension(R.dimen.aw_bubbles_max_size);
-        int prevNextExtraPadding = context.getResources().getDimensionPixelSize(R.dimen.aw_prev_next_button_extra_padding);
-
-        widgetHeight = context.getResources().getDimensionPixelSize(R.dimen.aw_player_height);
-        widgetWidth = context.getResources().getDimensionPixelSize(R.dimen.aw_player_width);
-        radius = widgetHeight / 2f;
-        playbackState = new PlaybackState();
-        return new Configuration.Builder()
-                .context(context)
-                .playbackState(playbackState)
-                .random(new Random())
-                .accDecInterpolator(new AccelerateDecelerateInterpolator())
-                .darkColor(darkColor)
-                .playColor(lightColor)
-                .progressColor(progressColor)
-                .expandedColor(expandColor)
-                .widgetWidth(widgetWidth)
-                .radius(radius)
-                .playlistDrawable(playlistDrawable)
-                .playDrawable(playDrawable)
-                .prevDrawable(prevDrawable)
-                .nextDrawable(nextDrawable)
-                .pauseDrawable(pauseDrawable)
-                .albumDrawable(albumDrawable)
-                .buttonPadding(buttonPadding)
-                .prevNextExtraPadding(prevNextExtraPadding)
-                .crossStrokeWidth(crossStrokeWidth)
-                .progressStrokeWidth(progressStrokeWidth)
-                .shadowRadius(shadowRadius)
-                .shadowDx(shadowDx)
-                .shadowDy(shadowDy)
-                .shadowColor(shadowColor)
-                .bubblesMinSize(bubblesMinSize)
-                .bubblesMaxSize(bubblesMaxSize)
-                .crossColor(crossColor)
-                .crossOverlappedColor(crossOverlappedColor)
-                .build();
+    private ExpandCollapseWidget createExpandCollapseWidget(@NonNull Drawable[] drawables) {
+        ExpandCollapseWidget widget = new ExpandCollapseWidget(configuration, drawables);
+        widget.onWidgetStateChangedListener(expandCollapseWidgetStateListener);
+        widget.onControlsClickListener(onControlsClickListener);
+        if (albumCover != null) {
+            widget.albumCover(albumCover);
+        }
+        expandedWidgetManager = new TouchManager(widget, widget.newBoundsChecker(edgeOffsetXExpanded, edgeOffsetYExpanded))
+                .screenWidth(screenSize.x)
+                .screenHeight(screenSize.y);
+        expandedWidgetManager.callback(expandCollapseWidgetCallback);
+        if (frameTracker != null) {
+            widget.frameTracker(frameTracker);
+            expandedWidgetManager.frameTracker(frameTracker);
+        }
+        expandedWidgetManager.gestureRecorder(gestureRecorder, GestureRecorder.TARGET_EXPANDED);
+        expandCollapseWidget = widget;
+        return widget;
     }
 
     /**
-     * Get status bar height.
-     * @return status bar height.
+     * Get expanded widget view, recreating it if it was released on memory pressure.
+     * @return expanded widget view
      */
-    private int statusBarHeight() {
-        int resourceId = context.getResources().getIdentifier("status_bar_height", "dimen", "android");
-        if (resourceId > 0) {
-            return context.getResources().getDimensionPixelSize(resourceId);
+    @NonNull
+    private ExpandCollapseWidget expandCollapseWidget() {
+        if (expandCollapseWidget == null) {
+            return createExpandCollapseWidget(ExpandCollapseWidget.mutateDrawables(configuration));
         }
-        return context.getResources().getDimensionPixelSize(R.dimen.aw_status_bar_height);
+        return expandCollapseWidget;
     }
 
-    /**
-     * Get navigation bar height.
-     * @return navigation bar height
-     */
-    private int navigationBarHeight() {
-        if (hasNavigationBar()) {
-            int resourceId = context.getResources().getIdentifier("navigation_bar_height", "dimen", "android");
-            if (resourceId > 0) {
-                return context.getResources().getDimensionPixelSize(resourceId);
-            }
-            return context.getResources().getDimensionPixelSize(R.dimen.aw_navigation_bar_height);
+    private static void beginPhase(@Nullable StartupTrace startupTrace, @NonNull StartupTrace.Phase phase) {
+        if (startupTrace != null) {
+            startupTrace.begin(phase);
+        }
+    }
+
+    private static void endPhase(@Nullable StartupTrace startupTrace) {
+        if (startupTrace != null) {
+            startupTrace.end();
         }
-        return 0;
     }
 
     /**
-     * Check if device has navigation bar.
-     * @return true if device has navigation bar, false otherwise.
+     * Prepare widget resources in background so the following {@link Builder#build()} and
+     * {@link #show(int, int)} calls on main thread only need to create and attach views.
+     * Builder must not be changed after this call.
+     *
+     * @param context instance of context
+     * @param builder builder that will be used to create widget
      */
-    private boolean hasNavigationBar() {
-        boolean hasBackKey = KeyCharacterMap.deviceHasKey(KeyEvent.KEYCODE_BACK);
-        boolean hasHomeKey = KeyCharacterMap.deviceHasKey(KeyEvent.KEYCODE_HOME);
-        int id = context.getResources().getIdentifier("config_showNavigationBar", "bool", "android");
-        return !hasBackKey && !hasHomeKey || id > 0 && context.getResources().getBoolean(id);
+    public static void prewarm(@NonNull Context context, @NonNull Builder builder) {
+        Context appContext = context.getApplicationContext();
+        FutureTask<PreparedResources> task = new FutureTask<>(() -> PreparedResources.prepare(appContext, builder, null));
+        builder.prewarmTask = task;
+        Thread thread = new Thread(task, "AudioWidget prewarm");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
     }
 
     /**
@@ -313,19 +334,28 @@ public class AudioWidget {
             @Override
             public void onWidgetStateChangedListener(@Nullable OnWidgetStateChangedListener onWidgetStateChangedListener) {
                 AudioWidget.this.onWidgetStateChangedListener = onWidgetStateChangedListener;
+                reportedX = reportedY = Integer.MIN_VALUE;
             }
 
             @Override
             public void albumCover(@Nullable Drawable albumCover) {
-                expandCollapseWidget.albumCover(albumCover);
+                AudioWidget.this.albumCover = albumCover;
+                if (expandCollapseWidget != null) {
+                    expandCollapseWidget.albumCover(albumCover);
+                }
             }
 
             @Override
             public void albumCoverBitmap(@Nullable Bitmap bitmap) {
                 if (bitmap == null)
-                    expandCollapseWidget.albumCover(null);
+                    albumCover(null);
                 else
-                    expandCollapseWidget.albumCover(new BitmapDrawable(context.getResources(), bitmap));
+                    albumCover(new BitmapDrawable(context.getResources(), bitmap));
+            }
+
+            @Override
+            public void onTrimMemoryListener(@Nullable OnTrimMemoryListener onTrimMemoryListener) {
+                AudioWidget.this.onTrimMemoryListener = onTrimMemoryListener;
             }
         };
     }
@@ -340,15 +370,68 @@ public class AudioWidget {
         if (shown) {
             return;
         }
+        beginPhase(startupTrace, StartupTrace.Phase.ADD_VIEWS);
+        // display could change while widget was hidden; views aren't added yet, so only state is updated
+        onDisplayChanged();
         shown = true;
-        float remWidX = screenSize.x / 2 - radius;
-        hiddenRemWidY = screenSize.y + widgetHeight + navigationBarHeight();
-        visibleRemWidY = screenSize.y - radius - (hasNavigationBar() ? 0 : widgetHeight);
-        show(removeWidgetView, (int) remWidX, (int) hiddenRemWidY);
+        updateRemoveWidgetPositions();
+        show(removeWidgetView, (int) removeWidgetX(), (int) hiddenRemWidY);
         show(playPauseButton, (int) (cx - widgetHeight), (int) (cy - widgetHeight));
+        endPhase(startupTrace);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            context.registerComponentCallbacks(systemCallbacks);
+        }
         playPauseButtonManager.animateToBounds();
     }
 
+    /**
+     * Calculate hidden and visible positions of remove widget view for current screen size.
+     */
+    private void updateRemoveWidgetPositions() {
+        hiddenRemWidY = screenSize.y + widgetHeight + navigationBarHeight;
+        visibleRemWidY = screenSize.y - radius - (hasNavigationBar ? 0 : widgetHeight);
+    }
+
+    private float removeWidgetX() {
+        return screenSize.x / 2 - radius;
+    }
+
+    /**
+     * Re-measure screen after display change (rotation, resize) and update only screen dependent
+     * state: bounds of touch managers, remove widget positions and positions of shown views.
+     * Widget views are kept as is.
+     */
+    private void onDisplayChanged() {
+        int oldWidth = screenSize.x;
+        int oldHeight = screenSize.y;
+        int oldNavigationBarHeight = navigationBarHeight;
+        // navigation bar may move or change its size with orientation
+        hasNavigationBar = PreparedResources.hasNavigationBar(context);
+        navigationBarHeight = PreparedResources.navigationBarHeight(context, hasNavigationBar);
+        PreparedResources.measureScreen(context, navigationBarHeight, screenSize);
+        if (screenSize.x == oldWidth && screenSize.y == oldHeight && navigationBarHeight == oldNavigationBarHeight)
+            return;
+        playPauseButtonManager.updateScreenSize(screenSize.x, screenSize.y);
+        if (expandedWidgetManager != null) {
+            expandedWidgetManager.updateScreenSize(screenSize.x, screenSize.y);
+        }
+        updateRemoveWidgetPositions();
+        if (!shown || removeWidgetView.getParent() == null)
+            return;
+        WindowManager.LayoutParams removeParams = (WindowManager.LayoutParams) removeWidgetView.getLayoutParams();
+        removeParams.x = (int) removeWidgetX();
+        // running remove widget animation picks up new positions on next frame
+        removeParams.y = (int) (removeWidgetShown ? visibleRemWidY : hiddenRemWidY);
+        windowManager.updateViewLayout(removeWidgetView, removeParams);
+        ExpandCollapseWidget expandCollapseWidget = this.expandCollapseWidget;
+        if (expandCollapseWidget != null && expandCollapseWidget.getParent() != null) {
+            // button follows expanded widget
+            updatePlayPauseButtonPosition();
+        } else {
+            notifyPositionChanged();
+        }
+    }
+
     /**
      * Hide widget.
      */
@@ -359,10 +442,15 @@ public class AudioWidget {
         shown = false;
         released = true;
         windowManager.removeView(playPauseButton);
-        try {
-            windowManager.removeView(expandCollapseWidget);
-        } catch (IllegalArgumentException e) {
-            // widget not added to window yet
+        if (expandCollapseWidget != null) {
+            try {
+                windowManager.removeView(expandCollapseWidget);
+            } catch (IllegalArgumentException e) {
+                // widget not added to window yet
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            context.unregisterComponentCallbacks(systemCallbacks);
         }
         if (onWidgetStateChangedListener != null) {
             onWidgetStateChangedListener.onWidgetStateChanged(State.REMOVED);
@@ -384,6 +472,10 @@ public class AudioWidget {
     }
 
     public void collapse() {
+        ExpandCollapseWidget expandCollapseWidget = this.expandCollapseWidget;
+        if (expandCollapseWidget == null) {
+            return;
+        }
         WindowManager.LayoutParams params = (WindowManager.LayoutParams) expandCollapseWidget.getLayoutParams();
         if (params.x < widgetHeight && expandCollapseWidget.expandDirection() == ExpandCollapseWidget.DIRECTION_LEFT) { // stick on the left side.
             expandCollapseWidget.expandDirection(ExpandCollapseWidget.DIRECTION_RIGHT);
@@ -399,6 +491,7 @@ public class AudioWidget {
     }
 
     private void updatePlayPauseButtonPosition() {
+        ExpandCollapseWidget expandCollapseWidget = expandCollapseWidget();
         WindowManager.LayoutParams widgetParams = (WindowManager.LayoutParams) expandCollapseWidget.getLayoutParams();
         WindowManager.LayoutParams params = (WindowManager.LayoutParams) playPauseButton.getLayoutParams();
         if (expandCollapseWidget.expandDirection() == ExpandCollapseWidget.DIRECTION_RIGHT) {
@@ -408,9 +501,24 @@ public class AudioWidget {
         }
         params.y = widgetParams.y;
         windowManager.updateViewLayout(playPauseButton, params);
-        if (onWidgetStateChangedListener != null) {
-            onWidgetStateChangedListener.onWidgetPositionChanged((int) (params.x + widgetHeight), (int) (params.y + widgetHeight));
-        }
+        notifyPositionChanged();
+    }
+
+    /**
+     * Notify listener about position of play/pause button. Position equal to last reported one
+     * is not reported again.
+     */
+    private void notifyPositionChanged() {
+        if (onWidgetStateChangedListener == null)
+            return;
+        WindowManager.LayoutParams params = (WindowManager.LayoutParams) playPauseButton.getLayoutParams();
+        int cx = (int) (params.x + widgetHeight);
+        int cy = (int) (params.y + widgetHeight);
+        if (cx == reportedX && cy == reportedY)
+            return;
+        reportedX = cx;
+        reportedY = cy;
+        onWidgetStateChangedListener.onWidgetPositionChanged(cx, cy);
     }
 
     @SuppressWarnings("deprecation")
@@ -429,8 +537,8 @@ public class AudioWidget {
         } else {
             x += widgetHeight / 2f;
         }
+        ExpandCollapseWidget expandCollapseWidget = expandCollapseWidget();
         show(expandCollapseWidget, x, y);
-        playPauseButton.setLayerType(View.LAYER_TYPE_NONE, null);
         expandCollapseWidget.expand(expandDirection);
         expandedWidgetManager.animateToBounds();
         playPauseButtonManager.animateToBounds(ppbToExpBoundsChecker);
@@ -446,6 +554,67 @@ public class AudioWidget {
         return controller;
     }
 
+    /**
+     * Get startup phase timings of widget. Time spent in {@link #show(int, int)} is accumulated
+     * in {@link StartupTrace.Phase#ADD_VIEWS} phase.
+     *
+     * @return startup trace or null if tracing wasn't enabled in builder
+     * @see Builder#startupTracing(boolean)
+     */
+    @Nullable
+    public StartupTrace startupTrace() {
+        return startupTrace;
+    }
+
+    /**
+     * Get snapshot of frame and draw timings of widget animations collected since widget creation
+     * or last {@link #resetMetrics()} call. Must be called on the main thread.
+     *
+     * @return metrics snapshot or null if metrics weren't enabled in builder
+     * @see Builder#frameMetrics(boolean)
+     */
+    @Nullable
+    public WidgetMetrics metrics() {
+        return frameTracker == null ? null : frameTracker.snapshot();
+    }
+
+    /**
+     * Record touch events received by widget. Used for reproducing performance issues with
+     * {@link GestureReplayer}.
+     *
+     * @param gestureRecorder recorder or null to stop recording
+     */
+    public void gestureRecorder(@Nullable GestureRecorder gestureRecorder) {
+        this.gestureRecorder = gestureRecorder;
+        playPauseButtonManager.gestureRecorder(gestureRecorder, GestureRecorder.TARGET_COLLAPSED);
+        if (expandedWidgetManager != null) {
+            expandedWidgetManager.gestureRecorder(gestureRecorder, GestureRecorder.TARGET_EXPANDED);
+        }
+    }
+
+    /**
+     * Dispatch replayed touch event to widget's view.
+     * @param target target id of view
+     * @param event touch event
+     */
+    void dispatchGestureEvent(int target, @NonNull MotionEvent event) {
+        if (target == GestureRecorder.TARGET_EXPANDED) {
+            ExpandCollapseWidget widget = expandCollapseWidget();
+            expandedWidgetManager.onTouch(widget, event);
+        } else {
+            playPauseButtonManager.onTouch(playPauseButton, event);
+        }
+    }
+
+    /**
+     * Reset collected frame and draw timings. Must be called on the main thread.
+     */
+    public void resetMetrics() {
+        if (frameTracker != null) {
+            frameTracker.reset();
+        }
+    }
+
     private void show(View view, int left, int top) {
         WindowManager.LayoutParams params = new WindowManager.LayoutParams(
                 WindowManager.LayoutParams.WRAP_CONTENT,
@@ -454,7 +623,9 @@ public class AudioWidget {
                 WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
                         | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
                         | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH
-                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
+                        // shadows are drawn as bitmaps, so nothing needs software rendering
+                        | WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED,
                 PixelFormat.TRANSLUCENT);
         params.gravity = Gravity.START | Gravity.TOP;
         params.x = left;
@@ -497,22 +668,346 @@ public class AudioWidget {
         protected abstract float stickyBottomSideImpl(float screenHeight);
     }
 
+    /**
+     * Widget resources resolved from builder settings. Can be prepared on any thread.
+     */
+    static final class PreparedResources {
+
+        final Configuration configuration;
+        final Point screenSize;
+        final boolean hasNavigationBar;
+        final int navigationBarHeight;
+        final int offsetCollapsed;
+        final int offsetExpanded;
+        final Drawable[] playPauseButtonDrawables;
+        final Drawable[] expandCollapseWidgetDrawables;
+
+        private PreparedResources(Configuration configuration, Point screenSize, boolean hasNavigationBar,
+                                  int navigationBarHeight, int offsetCollapsed, int offsetExpanded,
+                                  Drawable[] playPauseButtonDrawables, Drawable[] expandCollapseWidgetDrawables) {
+            this.configuration = configuration;
+            this.screenSize = screenSize;
+            this.hasNavigationBar = hasNavigationBar;
+            this.navigationBarHeight = navigationBarHeight;
+            this.offsetCollapsed = offsetCollapsed;
+            this.offsetExpanded = offsetExpanded;
+            this.playPauseButtonDrawables = playPauseButtonDrawables;
+            this.expandCollapseWidgetDrawables = expandCollapseWidgetDrawables;
+        }
+
+        /**
+         * Create resources for another widget. Configuration values, decoded drawables and
+         * screen metrics are shared, playback state and mutable drawable copies are new.
+         * @return resources for new widget
+         */
+        PreparedResources forNewWidget() {
+            Configuration configuration = this.configuration.withPlaybackState(new PlaybackState());
+            return new PreparedResources(configuration, new Point(screenSize), hasNavigationBar, navigationBarHeight,
+                    offsetCollapsed, offsetExpanded, PlayPauseButton.mutateDrawables(configuration),
+                    ExpandCollapseWidget.mutateDrawables(configuration));
+        }
+
+        /**
+         * Resolve all widget resources.
+         * @param context application context
+         * @param builder user defined settings
+         * @param startupTrace startup trace or null if tracing disabled
+         * @return prepared resources
+         */
+        @SuppressWarnings("deprecation")
+        static PreparedResources prepare(@NonNull Context context, @NonNull Builder builder, @Nullable StartupTrace startupTrace) {
+            beginPhase(startupTrace, StartupTrace.Phase.SCREEN_METRICS);
+            boolean hasNavigationBar = hasNavigationBar(context);
+            int navigationBarHeight = navigationBarHeight(context, hasNavigationBar);
+            Point screenSize = new Point();
+            measureScreen(context, navigationBarHeight, screenSize);
+            endPhase(startupTrace);
+
+            Configuration configuration = prepareConfiguration(context, builder, startupTrace);
+
+            beginPhase(startupTrace, StartupTrace.Phase.MUTATE_DRAWABLES);
+            Drawable[] playPauseButtonDrawables = PlayPauseButton.mutateDrawables(configuration);
+            Drawable[] expandCollapseWidgetDrawables = ExpandCollapseWidget.mutateDrawables(configuration);
+            endPhase(startupTrace);
+
+            beginPhase(startupTrace, StartupTrace.Phase.RESOLVE_RESOURCES);
+            int offsetCollapsed = context.getResources().getDimensionPixelOffset(R.dimen.aw_edge_offset_collapsed);
+            int offsetExpanded = context.getResources().getDimensionPixelOffset(R.dimen.aw_edge_offset_expanded);
+            endPhase(startupTrace);
+            return new PreparedResources(configuration, screenSize, hasNavigationBar, navigationBarHeight,
+                    offsetCollapsed, offsetExpanded, playPauseButtonDrawables, expandCollapseWidgetDrawables);
+        }
+
+        /**
+         * Measure area of screen available for widget (without status and navigation bars).
+         * @param context application context
+         * @param navigationBarHeight navigation bar height
+         * @param screenSize point to store size in
+         */
+        @SuppressWarnings("deprecation")
+        static void measureScreen(@NonNull Context context, int navigationBarHeight, @NonNull Point screenSize) {
+            WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
+                windowManager.getDefaultDisplay().getSize(screenSize);
+            } else {
+                screenSize.x = windowManager.getDefaultDisplay().getWidth();
+                screenSize.y = windowManager.getDefaultDisplay().getHeight();
+            }
+            screenSize.y -= statusBarHeight(context) + navigationBarHeight;
+        }
+
+        /**
+         * Prepare configuration for widget.
+         * @param context application context
+         * @param builder user defined settings
+         * @param startupTrace startup trace or null if tracing disabled
+         * @return new configuration for widget
+         */
+        private static Configuration prepareConfiguration(@NonNull Context context, @NonNull Builder builder, @Nullable StartupTrace startupTrace) {
+            beginPhase(startupTrace, StartupTrace.Phase.RESOLVE_RESOURCES);
+            int darkColor = builder.darkColorSet ? builder.darkColor : VersionUtil.color(context, R.color.aw_dark);
+            int lightColor = builder.lightColorSet ? builder.lightColor : VersionUtil.color(context, R.color.aw_light);
+            int progressColor = builder.progressColorSet ? builder.progressColor : VersionUtil.color(context, R.color.aw_progress);
+            int expandColor = builder.expandWidgetColorSet ? builder.expandWidgetColor : VersionUtil.color(context, R.color.aw_expanded);
+            int crossColor = builder.crossColorSet ? builder.crossColor : VersionUtil.color(context, R.color.aw_cross_default);
+            int crossOverlappedColor = builder.crossOverlappedColorSet ? builder.crossOverlappedColor : VersionUtil.color(context, R.color.aw_cross_overlapped);
+            int shadowColor = builder.shadowColorSet ? builder.shadowColor : VersionUtil.color(context, R.color.aw_shadow);
+
+            beginPhase(startupTrace, StartupTrace.Phase.RESOLVE_DRAWABLES);
+            IconAtlas atlas = null;
+            boolean bitmapIconsNeeded = !builder.proceduralIcons && (builder.playDrawable == null || builder.pauseDrawable == null
+                    || builder.prevDrawable == null || builder.nextDrawable == null);
+            if (bitmapIconsNeeded || builder.playlistDrawable == null || builder.defaultAlbumDrawable == null) {
+                atlas = IconAtlas.decode(context.getResources());
+            }
+            Drawable playDrawable = builder.proceduralIcons && builder.playDrawable == null
+                    ? new PathIconDrawable(PathIconDrawable.GLYPH_PLAY, Color.WHITE)
+                    : defaultDrawable(context, builder.playDrawable, atlas, IconAtlas.ICON_PLAY, R.drawable.aw_ic_play);
+            Drawable pauseDrawable = builder.proceduralIcons && builder.pauseDrawable == null
+                    ? new PathIconDrawable(PathIconDrawable.GLYPH_PAUSE, Color.WHITE)
+                    : defaultDrawable(context, builder.pauseDrawable, atlas, IconAtlas.ICON_PAUSE, R.drawable.aw_ic_pause);
+            Drawable prevDrawable = builder.proceduralIcons && builder.prevDrawable == null
+                    ? new PathIconDrawable(PathIconDrawable.GLYPH_PREV, Color.WHITE)
+                    : defaultDrawable(context, builder.prevDrawable, atlas, IconAtlas.ICON_PREV, R.drawable.aw_ic_prev);
+            Drawable nextDrawable = builder.proceduralIcons && builder.nextDrawable == null
+                    ? new PathIconDrawable(PathIconDrawable.GLYPH_NEXT, Color.WHITE)
+                    : defaultDrawable(context, builder.nextDrawable, atlas, IconAtlas.ICON_NEXT, R.drawable.aw_ic_next);
+            Drawable playlistDrawable = defaultDrawable(context, builder.playlistDrawable, atlas, IconAtlas.ICON_PLAYLIST, R.drawable.aw_ic_playlist);
+            Drawable albumDrawable = defaultDrawable(context, builder.defaultAlbumDrawable, atlas, IconAtlas.ICON_ALBUM, R.drawable.aw_ic_default_album);
+            endPhase(startupTrace);
+
+            int buttonPadding = builder.buttonPaddingSet ? builder.buttonPadding : context.getResources().getDimensionPixelSize(R.dimen.aw_button_padding);
+            float crossStrokeWidth = builder.crossStrokeWidthSet ? builder.crossStrokeWidth : context.getResources().getDimension(R.dimen.aw_cross_stroke_width);
+            float progressStrokeWidth = builder.progressStrokeWidthSet ? builder.progressStrokeWidth : context.getResources().getDimension(R.dimen.aw_progress_stroke_width);
+            float shadowRadius = builder.shadowRadiusSet ? builder.shadowRadius : context.getResources().getDimension(R.dimen.aw_shadow_radius);
+            float shadowDx = builder.shadowDxSet ? builder.shadowDx : context.getResources().getDimension(R.dimen.aw_shadow_dx);
+            float shadowDy = builder.shadowDySet ? builder.shadowDy : context.getResources().getDimension(R.dimen.aw_shadow_dy);
+            float bubblesMinSize = builder.bubblesMinSizeSet ? builder.bubblesMinSize : context.getResources().getDimension(R.dimen.aw_bubbles_min_size);
+            float bubblesMaxSize = builder.bubblesMaxSizeSet ? builder.bubblesMaxSize : context.getResources().getDimension(R.dimen.aw_bubbles_max_size);
+            int prevNextExtraPadding = context.getResources().getDimensionPixelSize(R.dimen.aw_prev_next_button_extra_padding);
+
+            float widgetHeight = context.getResources().getDimensionPixelSize(R.dimen.aw_player_height);
+            float widgetWidth = context.getResources().getDimensionPixelSize(R.dimen.aw_player_width);
+            float radius = widgetHeight / 2f;
+            PlaybackState playbackState = new PlaybackState();
+            endPhase(startupTrace);
+            return new Configuration.Builder()
+                    .context(context)
+                    .playbackState(playbackState)
+                    .random(new Random())
+                    .accDecInterpolator(new AccelerateDecelerateInterpolator())
+                    .frameClock(FrameClock.forDefaultDisplay(context))
+                    .darkColor(darkColor)
+                    .playColor(lightColor)
+                    .progressColor(progressColor)
+                    .expandedColor(expandColor)
+                    .widgetWidth(widgetWidth)
+                    .radius(radius)
+                    .playlistDrawable(playlistDrawable)
+                    .playDrawable(playDrawable)
+                    .prevDrawable(prevDrawable)
+                    .nextDrawable(nextDrawable)
+                    .pauseDrawable(pauseDrawable)
+                    .albumDrawable(albumDrawable)
+                    .buttonPadding(buttonPadding)
+                    .prevNextExtraPadding(prevNextExtraPadding)
+                    .crossStrokeWidth(crossStrokeWidth)
+                    .progressStrokeWidth(progressStrokeWidth)
+                    .shadowRadius(shadowRadius)
+                    .shadowDx(shadowDx)
+                    .shadowDy(shadowDy)
+                    .shadowColor(shadowColor)
+                    .bubblesMinSize(bubblesMinSize)
+                    .bubblesMaxSize(bubblesMaxSize)
+                    .crossColor(crossColor)
+                    .crossOverlappedColor(crossOverlappedColor)
+                    .build();
+        }
+
+        /**
+         * Get user defined drawable or default icon.
+         * @param context application context
+         * @param drawable user defined drawable or null
+         * @param atlas decoded icon atlas or null if atlas isn't available
+         * @param icon index of icon in atlas
+         * @param drawableId resource id of separate icon used if atlas isn't available
+         * @return drawable
+         */
+        private static Drawable defaultDrawable(@NonNull Context context, @Nullable Drawable drawable,
+                                                @Nullable IconAtlas atlas, int icon, @DrawableRes int drawableId) {
+            if (drawable != null)
+                return drawable;
+            if (atlas != null)
+                return atlas.icon(icon);
+            return VersionUtil.drawable(context, drawableId);
+        }
+
+        /**
+         * Get status bar height.
+         * @param context instance of context
+         * @return status bar height.
+         */
+        private static int statusBarHeight(@NonNull Context context) {
+            int resourceId = context.getResources().getIdentifier("status_bar_height", "dimen", "android");
+            if (resourceId > 0) {
+                return context.getResources().getDimensionPixelSize(resourceId);
+            }
+            return context.getResources().getDimensionPixelSize(R.dimen.aw_status_bar_height);
+        }
+
+        /**
+         * Get navigation bar height.
+         * @param context instance of context
+         * @param hasNavigationBar true if device has navigation bar
+         * @return navigation bar height
+         */
+        private static int navigationBarHeight(@NonNull Context context, boolean hasNavigationBar) {
+            if (hasNavigationBar) {
+                boolean landscape = context.getResources().getConfiguration().orientation
+                        == android.content.res.Configuration.ORIENTATION_LANDSCAPE;
+                String name = landscape ? "navigation_bar_height_landscape" : "navigation_bar_height";
+                int resourceId = context.getResources().getIdentifier(name, "dimen", "android");
+                if (resourceId > 0) {
+                    return context.getResources().getDimensionPixelSize(resourceId);
+                }
+                return context.getResources().getDimensionPixelSize(R.dimen.aw_navigation_bar_height);
+            }
+            return 0;
+        }
+
+        /**
+         * Check if device has navigation bar.
+         * @param context instance of context
+         * @return true if device has navigation bar, false otherwise.
+         */
+        private static boolean hasNavigationBar(@NonNull Context context) {
+            boolean hasBackKey = KeyCharacterMap.deviceHasKey(KeyEvent.KEYCODE_BACK);
+            boolean hasHomeKey = KeyCharacterMap.deviceHasKey(KeyEvent.KEYCODE_HOME);
+            int id = context.getResources().getIdentifier("config_showNavigationBar", "bool", "android");
+            return !hasBackKey && !hasHomeKey || id > 0 && context.getResources().getBoolean(id);
+        }
+    }
+
+    /**
+     * Release expanded widget view on memory pressure if widget is collapsed. It will be recreated
+     * on next expand with album cover set by app. Album cover itself is owned by app, that can
+     * drop it from its own cache and set it again.
+     * <p>
+     * Any running level, starting from {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE},
+     * and background levels release the view: it isn't visible while widget is collapsed.
+     * {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN} only means that app's UI was hidden, while
+     * widget stays on screen, so it's ignored.
+     * @param level trim level, one of {@link ComponentCallbacks2} TRIM_MEMORY_* constants
+     */
+    private void trimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return;
+        }
+        ExpandCollapseWidget expandCollapseWidget = this.expandCollapseWidget;
+        if (expandCollapseWidget == null || expandCollapseWidget.getWindowToken() != null
+                || expandCollapseWidget.isAnimationInProgress()) {
+            return;
+        }
+        expandCollapseWidget.release();
+        this.expandCollapseWidget = null;
+        expandedWidgetManager = null;
+        if (onTrimMemoryListener != null) {
+            onTrimMemoryListener.onExpandedWidgetReleased(level);
+        }
+    }
+
+    /**
+     * Listener of system memory and configuration callbacks. Registered while widget is shown.
+     */
+    private class SystemCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(android.content.res.Configuration newConfig) {
+            onDisplayChanged();
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
     /**
      * Helper class for dealing with collapsed widget touch events.
      */
     private class PlayPauseButtonCallback extends TouchManager.SimpleCallback {
 
-        private final ValueAnimator.AnimatorUpdateListener animatorUpdateListener;
+        private static final long REMOVE_WIDGET_ANIMATION_DURATION = 200;
+
+        /**
+         * Animator of remove widget position. Animated fraction 0 means hidden position, 1 means visible one.
+         */
+        private final ValueAnimator removeWidgetAnimator;
+
+        /**
+         * Delayed action that shows remove widget if user still holds the button.
+         */
+        private final Runnable showRemoveWidgetAction;
+        private boolean hidingRemoveWidget;
         private boolean readyToRemove;
 
         public PlayPauseButtonCallback() {
-            animatorUpdateListener = animation -> {
+            removeWidgetAnimator = ValueAnimator.ofFloat(0, 1).setDuration(REMOVE_WIDGET_ANIMATION_DURATION);
+            removeWidgetAnimator.addUpdateListener(animation -> {
                 if (!removeWidgetShown)
                     return;
                 WindowManager.LayoutParams params = (WindowManager.LayoutParams) removeWidgetView.getLayoutParams();
-                float y = (float) animation.getAnimatedValue();
-                params.y = (int) y;
+                float fraction = animation.getAnimatedFraction();
+                params.y = (int) (hiddenRemWidY + (visibleRemWidY - hiddenRemWidY) * fraction);
                 windowManager.updateViewLayout(removeWidgetView, params);
+            });
+            removeWidgetAnimator.addListener(new SimpleAnimatorListener() {
+
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    if (!hidingRemoveWidget)
+                        return;
+                    hidingRemoveWidget = false;
+                    removeWidgetShown = false;
+                    if (!shown) {
+                        windowManager.removeView(removeWidgetView);
+                    }
+                }
+            });
+            if (frameTracker != null) {
+                removeWidgetAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.DRAG));
+            }
+            showRemoveWidgetAction = () -> {
+                if (!released) {
+                    removeWidgetShown = true;
+                    hidingRemoveWidget = false;
+                    removeWidgetAnimator.start();
+                }
             };
         }
 
@@ -534,15 +1029,8 @@ public class AudioWidget {
         public void onTouched(float x, float y) {
             super.onTouched(x, y);
             released = false;
-            handler.postDelayed(() -> {
-                if (!released) {
-                    removeWidgetShown = true;
-                    ValueAnimator animator = ValueAnimator.ofFloat(hiddenRemWidY, visibleRemWidY);
-                    animator.setDuration(200);
-                    animator.addUpdateListener(animatorUpdateListener);
-                    animator.start();
-                }
-            }, Configuration.LONG_CLICK_THRESHOLD);
+            handler.removeCallbacks(showRemoveWidgetAction);
+            handler.postDelayed(showRemoveWidgetAction, Configuration.LONG_CLICK_THRESHOLD);
             playPauseButton.onTouchDown();
         }
 
@@ -562,41 +1050,40 @@ public class AudioWidget {
         @Override
         public void onReleased(float x, float y) {
             super.onReleased(x, y);
-            playPauseButton.onTouchUp();
-            released = true;
-            if (removeWidgetShown) {
-                ValueAnimator animator = ValueAnimator.ofFloat(visibleRemWidY, hiddenRemWidY);
-                animator.setDuration(200);
-                animator.addUpdateListener(animatorUpdateListener);
-                animator.addListener(new SimpleAnimatorListener() {
-
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        removeWidgetShown = false;
-                        if (!shown) {
-                            windowManager.removeView(removeWidgetView);
-                        }
-                    }
-                });
-                animator.start();
-            }
+            endTouch();
             if (isReadyToRemove()) {
                 hide();
             } else {
-                if (onWidgetStateChangedListener != null) {
-                    WindowManager.LayoutParams params = (WindowManager.LayoutParams) playPauseButton.getLayoutParams();
-                    onWidgetStateChangedListener.onWidgetPositionChanged((int) (params.x + widgetHeight), (int) (params.y + widgetHeight));
-                }
+                notifyPositionChanged();
+            }
+        }
+
+        @Override
+        public void onTouchCancelled(float x, float y) {
+            super.onTouchCancelled(x, y);
+            endTouch();
+            // only user's release over remove widget removes widget
+            if (readyToRemove) {
+                readyToRemove = false;
+                removeWidgetView.setOverlapped(false);
+            }
+            notifyPositionChanged();
+        }
+
+        private void endTouch() {
+            playPauseButton.onTouchUp();
+            released = true;
+            handler.removeCallbacks(showRemoveWidgetAction);
+            if (removeWidgetShown && !hidingRemoveWidget) {
+                hidingRemoveWidget = true;
+                removeWidgetAnimator.reverse();
             }
         }
 
         @Override
         public void onAnimationCompleted() {
             super.onAnimationCompleted();
-            if (onWidgetStateChangedListener != null) {
-                WindowManager.LayoutParams params = (WindowManager.LayoutParams) playPauseButton.getLayoutParams();
-                onWidgetStateChangedListener.onWidgetPositionChanged((int) (params.x + widgetHeight), (int) (params.y + widgetHeight));
-            }
+            notifyPositionChanged();
         }
 
         private boolean isReadyToRemove() {
@@ -617,18 +1104,25 @@ public class AudioWidget {
         @Override
         public void onTouched(float x, float y) {
             super.onTouched(x, y);
-            expandCollapseWidget.onTouched(x, y);
+            expandCollapseWidget().onTouched(x, y);
         }
 
         @Override
         public void onReleased(float x, float y) {
             super.onReleased(x, y);
-            expandCollapseWidget.onReleased(x, y);
+            expandCollapseWidget().onReleased(x, y);
+        }
+
+        @Override
+        public void onTouchCancelled(float x, float y) {
+            super.onTouchCancelled(x, y);
+            // releases touched button without clicking it
+            expandCollapseWidget().onReleased(x, y);
         }
 
         @Override
         public void onClick(float x, float y) {
-            expandCollapseWidget.onClick(x, y);
+            expandCollapseWidget().onClick(x, y);
         }
 
         @Override
@@ -760,6 +1254,10 @@ public class AudioWidget {
         private boolean edgeOffsetYCollapsedSet;
         private boolean edgeOffsetXExpandedSet;
         private boolean edgeOffsetYExpandedSet;
+        private boolean startupTracing;
+        private boolean frameMetrics;
+        private boolean proceduralIcons;
+        private FutureTask<PreparedResources> prewarmTask;
 
         public Builder(@NonNull Context context) {
             this.context = context;
@@ -1004,12 +1502,52 @@ public class AudioWidget {
             return this;
         }
 
+        /**
+         * Enable timing of widget construction and showing phases. Disabled by default.
+         * @param startupTracing true to enable tracing, false otherwise
+         * @see AudioWidget#startupTrace()
+         */
+        public Builder startupTracing(boolean startupTracing) {
+            this.startupTracing = startupTracing;
+            return this;
+        }
+
+        /**
+         * Enable collecting of frame and draw timings of widget animations. Disabled by default.
+         * @param frameMetrics true to enable metrics, false otherwise
+         * @see AudioWidget#metrics()
+         */
+        public Builder frameMetrics(boolean frameMetrics) {
+            this.frameMetrics = frameMetrics;
+            return this;
+        }
+
+        /**
+         * Draw default play, pause, previous and next icons as vector paths instead of bitmaps.
+         * Play and pause icons will morph into each other instead of cross-fading. Icons set
+         * explicitly are not affected. Disabled by default.
+         * @param proceduralIcons true to draw default icons as paths, false otherwise
+         */
+        public Builder proceduralIcons(boolean proceduralIcons) {
+            this.proceduralIcons = proceduralIcons;
+            return this;
+        }
+
         /**
          * Create new audio widget.
          * @return new audio widget
          * @throws IllegalStateException if size parameters have wrong values (less than zero).
          */
         public AudioWidget build() {
+            checkValues();
+            return new AudioWidget(this);
+        }
+
+        /**
+         * Check size parameters.
+         * @throws IllegalStateException if size parameters have wrong values (less than zero).
+         */
+        void checkValues() {
             if (buttonPaddingSet) {
                 checkOrThrow(buttonPadding, "Button padding");
             }
@@ -1037,7 +1575,35 @@ public class AudioWidget {
             if (progressStrokeWidthSet) {
                 checkOrThrow(progressStrokeWidth, "Progress stroke width");
             }
-            return new AudioWidget(this);
+        }
+
+        /**
+         * Get resources prepared by {@link AudioWidget#prewarm(Context, Builder)}.
+         * Waits for prewarm to finish if it's still in progress. If prewarm failed with exception,
+         * its cause is logged and resources are prepared again on calling thread, so failure that
+         * isn't specific to prewarm thread is thrown from there. Errors are rethrown.
+         * @return prepared resources or null if widget wasn't prewarmed or prewarm failed
+         */
+        @Nullable
+        PreparedResources takePrewarmed() {
+            FutureTask<PreparedResources> task = prewarmTask;
+            prewarmTask = null;
+            if (task == null) {
+                return null;
+            }
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                Log.w(AudioWidget.class.getSimpleName(), "Prewarm failed, preparing resources on calling thread.", cause);
+                return null;
+            }
         }
 
         private void checkOrThrow(int number, String name) {
@@ -1127,6 +1693,13 @@ public class AudioWidget {
          * @param albumCover album cover or null to set default one
          */
         void albumCoverBitmap(@Nullable Bitmap albumCover);
+
+        /**
+         * Set listener that will be notified when widget releases resources on memory pressure.
+         *
+         * @param onTrimMemoryListener trim memory listener
+         */
+        void onTrimMemoryListener(@Nullable OnTrimMemoryListener onTrimMemoryListener);
     }
 
     /**
@@ -1182,6 +1755,20 @@ public class AudioWidget {
         void onWidgetPositionChanged(int cx, int cy);
     }
 
+    /**
+     * Listener for resources released on memory pressure.
+     */
+    public interface OnTrimMemoryListener {
+
+        /**
+         * Called when widget released its collapsed expanded widget view in response to memory
+         * pressure. View will be recreated on next expand.
+         *
+         * @param level trim level, one of {@link ComponentCallbacks2} TRIM_MEMORY_* constants
+         */
+        void onExpandedWidgetReleased(int level);
+    }
+
     /**
      * Widget state.
      */
@@ -0,0 +1,69 @@
+package com.cleveroad.audiowidget;
+
+/**
+ * Position and alpha math of bubbles animations. Positions are written into preallocated arrays
+ * of interleaved x and y coordinates, so views only draw circles at computed positions.
+ */
+final class Bubbles {
+
+	private Bubbles() {}
+
+	/**
+	 * Get alpha of bubbles at given time of animation.
+	 * @param time normalized animation time
+	 * @param alphaFunction pairs of alpha and time (see {@link DrawableUtils#customFunction(float, float...)})
+	 * @return alpha in range [0, 255]
+	 */
+	static int alpha(float time, float[] alphaFunction) {
+		return (int) DrawableUtils.customFunction(time, alphaFunction);
+	}
+
+	/**
+	 * Update speeds of bubbles flying away from center of circle.
+	 * @param time normalized animation time
+	 * @param coefficients speed coefficients of bubbles
+	 * @param speeds output speeds of bubbles
+	 */
+	static void updateRadialSpeeds(float time, float[] coefficients, float[] speeds) {
+		for (int i = 0; i < speeds.length; i++) {
+			speeds[i] = time * coefficients[i];
+		}
+	}
+
+	/**
+	 * Compute positions of bubbles flying away from center of circle. Bubbles are placed
+	 * evenly around circle starting from given angle.
+	 * @param cx x coordinate of center
+	 * @param cy y coordinate of center
+	 * @param startAngle angle of first bubble in degrees
+	 * @param angleStep angle between neighbour bubbles in degrees
+	 * @param speeds speeds of bubbles
+	 * @param positions output positions of bubbles
+	 */
+	static void radialPositions(float cx, float cy, float startAngle, float angleStep, float[] speeds, float[] positions) {
+		for (int i = 0; i < speeds.length; i++) {
+			float angle = startAngle + angleStep * i;
+			float y = cy * (1 - speeds[i]);
+			positions[2 * i] = DrawableUtils.rotateX(cx, y, cx, cy, angle);
+			positions[2 * i + 1] = DrawableUtils.rotateY(cx, y, cx, cy, angle);
+		}
+	}
+
+	/**
+	 * Compute positions of bubbles flying vertically from their origins: first half of bubbles
+	 * flies up, second half flies down.
+	 * @param time normalized animation time
+	 * @param speeds speeds of bubbles
+	 * @param origins start positions of bubbles
+	 * @param positions output positions of bubbles
+	 */
+	static void verticalPositions(float time, float[] speeds, float[] origins, float[] positions) {
+		int half = speeds.length / 2;
+		for (int i = 0; i < speeds.length; i++) {
+			float speed = speeds[i] * time;
+			float cy = origins[2 * i + 1];
+			positions[2 * i] = origins[2 * i];
+			positions[2 * i + 1] = i < half ? cy * (1 - speed) : cy * (1 + speed);
+		}
+	}
+}
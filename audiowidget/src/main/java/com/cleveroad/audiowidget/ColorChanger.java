@@ -3,13 +3,17 @@ package com.cleveroad.audiowidget;
 import android.graphics.Color;
 
 /**
- * Helper class for changing color.
+ * Helper class for changing color. Colors can be precomputed as keyframes with
+ * {@link #keyframes(int)}: {@link #color(float)} then blends two nearest keyframes instead of
+ * converting color from HSV.
  */
 class ColorChanger {
 
 	private final float[] fromColorHsv;
 	private final float[] toColorHsv;
 	private final float[] resultColorHsv;
+	private int[] keyframes;
+	private int keyframesCount;
 
 	public ColorChanger() {
 		fromColorHsv = new float[3];
@@ -19,11 +23,13 @@ class ColorChanger {
 
     public ColorChanger fromColor(int fromColor) {
 		Color.colorToHSV(fromColor, fromColorHsv);
+		keyframesCount = 0;
 		return this;
 	}
 
 	public ColorChanger toColor(int toColor) {
 		Color.colorToHSV(toColor, toColorHsv);
+		keyframesCount = 0;
 		return this;
 	}
 
@@ -33,4 +39,49 @@ class ColorChanger {
 		}
 		return Color.HSVToColor(resultColorHsv);
 	}
+
+	/**
+	 * Precompute colors for evenly spaced values of dt. Must be called after colors are set.
+	 * @param count number of keyframes, at least 2
+	 * @return this changer
+	 */
+	public ColorChanger keyframes(int count) {
+		if (keyframes == null || keyframes.length < count) {
+			keyframes = new int[count];
+		}
+		for (int i = 0; i < count; i++) {
+			keyframes[i] = nextColor(i / (float) (count - 1));
+		}
+		keyframesCount = count;
+		return this;
+	}
+
+	/**
+	 * Get color for dt. Uses precomputed keyframes if available.
+	 * @param dt value in range [0, 1]
+	 * @return color
+	 */
+	public int color(float dt) {
+		if (keyframesCount == 0) {
+			return nextColor(dt);
+		}
+		float position = DrawableUtils.between(dt, 0, 1) * (keyframesCount - 1);
+		int index = (int) position;
+		if (index >= keyframesCount - 1) {
+			return keyframes[keyframesCount - 1];
+		}
+		return blend(keyframes[index], keyframes[index + 1], position - index);
+	}
+
+	private static int blend(int from, int to, float t) {
+		int a = blendChannel(from >>> 24, to >>> 24, t);
+		int r = blendChannel((from >> 16) & 0xFF, (to >> 16) & 0xFF, t);
+		int g = blendChannel((from >> 8) & 0xFF, (to >> 8) & 0xFF, t);
+		int b = blendChannel(from & 0xFF, to & 0xFF, t);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static int blendChannel(int from, int to, float t) {
+		return (int) (from + (to - from) * t + 0.5f);
+	}
 }
@@ -50,6 +50,7 @@ class Configuration {
     private final int crossOverlappedColor;
     private final Interpolator accDecInterpolator;
     private final int prevNextExtraPadding;
+    private final FrameClock frameClock;
 
 	private Configuration(Builder builder) {
 		this.context = builder.context;
@@ -80,6 +81,46 @@ class Configuration {
         this.crossOverlappedColor = builder.crossOverlappedColor;
         this.accDecInterpolator = builder.accDecInterpolator;
         this.prevNextExtraPadding = builder.prevNextExtraPadding;
+        this.frameClock = builder.frameClock;
+	}
+
+	/**
+	 * Create copy of configuration with different playback state.
+	 * @param playbackState playback state
+	 * @return new configuration
+	 */
+	public Configuration withPlaybackState(PlaybackState playbackState) {
+		return new Builder()
+				.context(context)
+				.random(random)
+				.widgetWidth(width)
+				.radius(height)
+				.playColor(lightColor)
+				.darkColor(darkColor)
+				.progressColor(progressColor)
+				.expandedColor(expandedColor)
+				.playlistDrawable(playlistDrawable)
+				.playDrawable(playDrawable)
+				.pauseDrawable(pauseDrawable)
+				.prevDrawable(prevDrawable)
+				.nextDrawable(nextDrawable)
+				.albumDrawable(albumDrawable)
+				.playbackState(playbackState)
+				.buttonPadding(buttonPadding)
+				.crossStrokeWidth(crossStrokeWidth)
+				.progressStrokeWidth(progressStrokeWidth)
+				.shadowRadius(shadowRadius)
+				.shadowDx(shadowDx)
+				.shadowDy(shadowDy)
+				.shadowColor(shadowColor)
+				.bubblesMinSize(bubblesMinSize)
+				.bubblesMaxSize(bubblesMaxSize)
+				.crossColor(crossColor)
+				.crossOverlappedColor(crossOverlappedColor)
+				.accDecInterpolator(accDecInterpolator)
+				.prevNextExtraPadding(prevNextExtraPadding)
+				.frameClock(frameClock)
+				.build();
 	}
 
 	public Context context() {
@@ -198,6 +239,10 @@ class Configuration {
         return prevNextExtraPadding;
     }
 
+    public FrameClock frameClock() {
+        return frameClock;
+    }
+
     public static final class Builder {
 
 		private int lightColor;
@@ -228,6 +273,7 @@ class Configuration {
         private int crossOverlappedColor;
         private Interpolator accDecInterpolator;
         private int prevNextExtraPadding;
+        private FrameClock frameClock;
 
         public Builder context(Context context) {
 			this.context = context;
@@ -369,6 +415,11 @@ class Configuration {
             return this;
         }
 
+        public Builder frameClock(FrameClock frameClock) {
+            this.frameClock = frameClock;
+            return this;
+        }
+
         public Configuration build() {
 			return new Configuration(this);
 		}
@@ -54,13 +54,24 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 	private static final int INDEX_PAUSE = 5;
 
 	private static final int TOTAL_BUBBLES_COUNT = 30;
+	private static final float[] BUBBLES_ALPHA_FUNCTION = {0, 0, 255, 0.33f, 255, 0.66f, 0, 1f};
+	private static final float TOUCHED_BUTTON_SIZE = 0.9f;
 
 
 	private final Paint paint;
+	/**
+	 * Pre-blurred shadow of widget, stretched to widget bounds. Null if shadow is disabled.
+	 */
+	@Nullable
+	private final ShadowCache.Shadow shadow;
 	private final float radius;
 	private final float widgetWidth;
 	private final float widgetHeight;
 	private final ColorChanger colorChanger;
+	private final FrameClock frameClock;
+	private final FrameClock.Sampler expandSampler;
+	private final FrameClock.Sampler collapseSampler;
+	private final FrameClock.Sampler bubblesSampler;
 	private final int playColor;
 	private final int pauseColor;
 	private final int widgetColor;
@@ -69,6 +80,7 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 	private final float sizeStep;
 	private final float[] bubbleSizes;
 	private final float[] bubbleSpeeds;
+	private final float[] bubbleOrigins;
 	private final float[] bubblePositions;
     private final float bubblesMinSize;
     private final float bubblesMaxSize;
@@ -95,10 +107,16 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 	private int padding;
 	private AudioWidget.OnControlsClickListener onControlsClickListener;
     private int touchedButtonIndex;
-
-	public ExpandCollapseWidget(@NonNull Configuration configuration) {
+    @Nullable
+    private FrameTracker frameTracker;
+
+	/**
+	 * Create new expanded state view.
+	 * @param configuration widget configuration
+	 * @param drawables mutable drawables created with {@link #mutateDrawables(Configuration)}
+	 */
+	public ExpandCollapseWidget(@NonNull Configuration configuration, @NonNull Drawable[] drawables) {
 		super(configuration.context());
-		setLayerType(LAYER_TYPE_SOFTWARE, null);
 		this.playbackState = configuration.playbackState();
         this.accDecInterpolator = configuration.accDecInterpolator();
 		this.random = configuration.random();
@@ -110,15 +128,20 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 		this.paint = new Paint();
 		this.paint.setColor(configuration.expandedColor());
 		this.paint.setAntiAlias(true);
-		this.paint.setShadowLayer(
-                configuration.shadowRadius(),
-                configuration.shadowDx(),
-                configuration.shadowDy(),
-                configuration.shadowColor()
-        );
+		this.shadow = ShadowCache.circleShadow(
+				configuration.radius(),
+				configuration.shadowRadius(),
+				configuration.shadowDx(),
+				configuration.shadowDy(),
+				configuration.shadowColor()
+		);
 		this.radius = configuration.radius();
 		this.widgetWidth = configuration.widgetWidth();
 		this.colorChanger = new ColorChanger();
+		this.frameClock = configuration.frameClock();
+		this.expandSampler = frameClock.newSampler(EXPAND_DURATION_L);
+		this.collapseSampler = frameClock.newSampler(COLLAPSE_DURATION_L);
+		this.bubblesSampler = frameClock.newSampler((long) (EXPAND_BUBBLES_END_F - EXPAND_BUBBLES_START_F));
 		this.playColor = configuration.darkColor();
 		this.pauseColor = configuration.lightColor();
 		this.widgetColor = configuration.expandedColor();
@@ -128,14 +151,9 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
         this.bubblesMaxSize = configuration.bubblesMaxSize();
 		this.tmpRect = new Rect();
 		this.buttonBounds = new Rect[5];
-		this.drawables = new Drawable[6];
 		this.bounds = new RectF();
-		this.drawables[INDEX_PLAYLIST] = configuration.playlistDrawable().getConstantState().newDrawable().mutate();
-		this.drawables[INDEX_PREV] = configuration.prevDrawable().getConstantState().newDrawable().mutate();
-		this.drawables[INDEX_PLAY] = configuration.playDrawable().getConstantState().newDrawable().mutate();
-		this.drawables[INDEX_PAUSE] = configuration.pauseDrawable().getConstantState().newDrawable().mutate();
-		this.drawables[INDEX_NEXT] = configuration.nextDrawable().getConstantState().newDrawable().mutate();
-		this.drawables[INDEX_ALBUM] = defaultAlbumCover = configuration.albumDrawable().getConstantState().newDrawable().mutate();
+		this.drawables = drawables;
+		this.defaultAlbumCover = drawables[INDEX_ALBUM];
 		this.sizeStep = widgetWidth / 5f;
 		this.widgetHeight = radius * 2;
 		for (int i = 0; i < buttonBounds.length; i++) {
@@ -143,13 +161,16 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 		}
 		this.bubbleSizes = new float[TOTAL_BUBBLES_COUNT];
 		this.bubbleSpeeds = new float[TOTAL_BUBBLES_COUNT];
+		this.bubbleOrigins = new float[TOTAL_BUBBLES_COUNT * 2];
 		this.bubblePositions = new float[TOTAL_BUBBLES_COUNT * 2];
 		this.playbackState.addPlaybackStateListener(this);
 		this.expandAnimator = ValueAnimator.ofInt(0, (int) EXPAND_DURATION_L).setDuration(EXPAND_DURATION_L);
         LinearInterpolator interpolator = new LinearInterpolator();
         this.expandAnimator.setInterpolator(interpolator);
 		this.expandAnimator.addUpdateListener(animation -> {
-			int position = (int) animation.getAnimatedValue();
+			long position = expandSampler.sample(animation);
+			if (position < 0)
+				return;
 			updateExpandAnimation(position);
 			invalidate();
 		});
@@ -158,6 +179,7 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 			public void onAnimationStart(Animator animation) {
 				super.onAnimationStart(animation);
 				animatingExpand = true;
+				expandSampler.reset();
 			}
 
 			@Override
@@ -179,7 +201,9 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 		this.collapseAnimator = ValueAnimator.ofInt(0, (int) COLLAPSE_DURATION_L).setDuration(COLLAPSE_DURATION_L);
         this.collapseAnimator.setInterpolator(interpolator);
 		this.collapseAnimator.addUpdateListener(animation -> {
-			int position = (int) animation.getAnimatedValue();
+			long position = collapseSampler.sample(animation);
+			if (position < 0)
+				return;
 			updateCollapseAnimation(position);
 			invalidate();
 		});
@@ -188,6 +212,7 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 			public void onAnimationStart(Animator animation) {
 				super.onAnimationStart(animation);
 				animatingCollapse = true;
+				collapseSampler.reset();
 			}
 
 			@Override
@@ -207,37 +232,28 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 			}
 		});
 		this.padding = configuration.context().getResources().getDimensionPixelSize(R.dimen.aw_expand_collapse_widget_padding);
-        ValueAnimator.AnimatorUpdateListener listener = animation -> {
-            if (touchedButtonIndex == -1 || touchedButtonIndex >= buttonBounds.length) {
-                return;
-            }
-            calculateBounds(touchedButtonIndex, tmpRect);
-            Rect rect = buttonBounds[touchedButtonIndex];
-            float width = tmpRect.width() * (float) animation.getAnimatedValue() / 2;
-            float height = tmpRect.height() * (float) animation.getAnimatedValue() / 2;
-            int l = (int) (tmpRect.centerX() - width);
-            int r = (int) (tmpRect.centerX() + width);
-            int t = (int) (tmpRect.centerY() - height);
-            int b = (int) (tmpRect.centerY() + height);
-            rect.set(l, t, r, b);
-            invalidate(rect);
-        };
-        touchDownAnimator = ValueAnimator.ofFloat(1, 0.9f).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
-        touchDownAnimator.addUpdateListener(listener);
-        touchUpAnimator = ValueAnimator.ofFloat(0.9f, 1f).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
-        touchUpAnimator.addUpdateListener(listener);
+        touchDownAnimator = ValueAnimator.ofFloat(1, TOUCHED_BUTTON_SIZE).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
+        touchDownAnimator.addUpdateListener(animation ->
+                updateTouchedButtonBounds(1 - (1 - TOUCHED_BUTTON_SIZE) * animation.getAnimatedFraction()));
+        touchUpAnimator = ValueAnimator.ofFloat(TOUCHED_BUTTON_SIZE, 1f).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
+        touchUpAnimator.addUpdateListener(animation ->
+                updateTouchedButtonBounds(TOUCHED_BUTTON_SIZE + (1 - TOUCHED_BUTTON_SIZE) * animation.getAnimatedFraction()));
         bubblesTouchAnimator = ValueAnimator.ofFloat(0, EXPAND_BUBBLES_END_F - EXPAND_BUBBLES_START_F)
                 .setDuration((long) (EXPAND_BUBBLES_END_F - EXPAND_BUBBLES_START_F));
         bubblesTouchAnimator.setInterpolator(interpolator);
         bubblesTouchAnimator.addUpdateListener(animation -> {
-            bubblesTime = animation.getAnimatedFraction();
-            bubblesPaint.setAlpha((int) DrawableUtils.customFunction(bubblesTime, 0, 0, 255, 0.33f, 255, 0.66f, 0, 1f));
+            long position = bubblesSampler.sample(animation);
+            if (position < 0)
+                return;
+            bubblesTime = position / (EXPAND_BUBBLES_END_F - EXPAND_BUBBLES_START_F);
+            bubblesPaint.setAlpha(Bubbles.alpha(bubblesTime, BUBBLES_ALPHA_FUNCTION));
             invalidate();
         });
         bubblesTouchAnimator.addListener(new SimpleAnimatorListener() {
             @Override
             public void onAnimationStart(Animator animation) {
                 super.onAnimationStart(animation);
+                bubblesSampler.reset();
             }
 
             @Override
@@ -254,6 +270,38 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
         });
     }
 
+	private void updateTouchedButtonBounds(float size) {
+		if (touchedButtonIndex == -1 || touchedButtonIndex >= buttonBounds.length) {
+			return;
+		}
+		calculateBounds(touchedButtonIndex, tmpRect);
+		Rect rect = buttonBounds[touchedButtonIndex];
+		float width = tmpRect.width() * size / 2;
+		float height = tmpRect.height() * size / 2;
+		int l = (int) (tmpRect.centerX() - width);
+		int r = (int) (tmpRect.centerX() + width);
+		int t = (int) (tmpRect.centerY() - height);
+		int b = (int) (tmpRect.centerY() + height);
+		rect.set(l, t, r, b);
+		invalidate(rect);
+	}
+
+	/**
+	 * Create mutable copies of drawables used by this view.
+	 * @param configuration widget configuration
+	 * @return array of mutable drawables
+	 */
+	static Drawable[] mutateDrawables(@NonNull Configuration configuration) {
+		Drawable[] drawables = new Drawable[6];
+		drawables[INDEX_PLAYLIST] = configuration.playlistDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_PREV] = configuration.prevDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_PLAY] = configuration.playDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_PAUSE] = configuration.pauseDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_NEXT] = configuration.nextDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_ALBUM] = configuration.albumDrawable().getConstantState().newDrawable().mutate();
+		return drawables;
+	}
+
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 		int w = MeasureSpec.makeMeasureSpec((int) widgetWidth + padding * 2, MeasureSpec.EXACTLY);
@@ -263,22 +311,25 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 
 	@Override
 	protected void onDraw(@NonNull Canvas canvas) {
+		if (frameTracker != null) {
+			frameTracker.beginDraw();
+		}
 		if (bubblesTime >= 0) {
-			int half = TOTAL_BUBBLES_COUNT / 2;
+			Bubbles.verticalPositions(bubblesTime, bubbleSpeeds, bubbleOrigins, bubblePositions);
 			for (int i = 0; i < TOTAL_BUBBLES_COUNT; i++) {
-				float radius = bubbleSizes[i];
-				float speed = bubbleSpeeds[i] * bubblesTime;
-				float cx = bubblePositions[2 * i];
-				float cy = bubblePositions[2 * i + 1];
-				if (i < half)
-					cy *= (1 - speed);
-				else
-					cy *= (1 + speed);
-				canvas.drawCircle(cx, cy, radius, bubblesPaint);
+				canvas.drawCircle(bubblePositions[2 * i], bubblePositions[2 * i + 1], bubbleSizes[i], bubblesPaint);
 			}
+			countDrawCalls(WidgetMetrics.DrawCall.CIRCLE, TOTAL_BUBBLES_COUNT);
+		}
+		if (shadow != null) {
+			countDrawCalls(WidgetMetrics.DrawCall.SHADOW, shadow.drawPill(canvas, bounds, paint.getAlpha()));
 		}
 		canvas.drawRoundRect(bounds, radius, radius, paint);
+		countDrawCalls(WidgetMetrics.DrawCall.ROUND_RECT, 1);
 		drawMediaButtons(canvas);
+		if (frameTracker != null) {
+			frameTracker.endDraw(canvas);
+		}
 	}
 
 	private void drawMediaButtons(@NonNull Canvas canvas) {
@@ -296,12 +347,19 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 			drawable.setBounds(buttonBounds[i]);
 			drawable.draw(canvas);
 		}
+		countDrawCalls(WidgetMetrics.DrawCall.DRAWABLE, buttonBounds.length);
+	}
+
+	private void countDrawCalls(@NonNull WidgetMetrics.DrawCall drawCall, int count) {
+		if (frameTracker != null) {
+			frameTracker.drawCalls(drawCall, count);
+		}
 	}
 
 	private void updateExpandAnimation(long position) {
 		if (DrawableUtils.isBetween(position, 0, EXPAND_COLOR_END_F)) {
 			float t = DrawableUtils.normalize(position, 0, EXPAND_COLOR_END_F);
-			paint.setColor(colorChanger.nextColor(t));
+			paint.setColor(colorChanger.color(t));
 		}
 		if (DrawableUtils.isBetween(position, 0, EXPAND_SIZE_END_F)) {
 			float time = DrawableUtils.normalize(position, 0, EXPAND_SIZE_END_F);
@@ -367,7 +425,7 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 		}
 		if (DrawableUtils.isBetween(position, EXPAND_BUBBLES_START_F, EXPAND_BUBBLES_END_F)) {
 			float time = DrawableUtils.normalize(position, EXPAND_BUBBLES_START_F, EXPAND_BUBBLES_END_F);
-			bubblesPaint.setAlpha((int) DrawableUtils.customFunction(time, 0, 0, 255, 0.33f, 255, 0.66f, 0, 1f));
+			bubblesPaint.setAlpha(Bubbles.alpha(time, BUBBLES_ALPHA_FUNCTION));
 		} else {
             bubblesPaint.setAlpha(0);
         }
@@ -426,7 +484,7 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 		if (DrawableUtils.isBetween(position, COLLAPSE_SIZE_START_F, COLLAPSE_SIZE_END_F)) {
 			float time = DrawableUtils.normalize(position, COLLAPSE_SIZE_START_F, COLLAPSE_SIZE_END_F);
             time = accDecInterpolator.getInterpolation(time);
-			paint.setColor(colorChanger.nextColor(time));
+			paint.setColor(colorChanger.color(time));
 			float l, r, t, b;
 			float height = radius * 2;
 			t = radius;
@@ -541,6 +599,9 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 					.fromColor(pauseColor)
 					.toColor(widgetColor);
 		}
+		if (frameClock.usesKeyframes()) {
+			colorChanger.keyframes(FrameClock.keyframesCount(EXPAND_COLOR_END_F));
+		}
         randomizeBubblesPosition();
 		expandAnimator.start();
 	}
@@ -557,8 +618,8 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
             float cy = widgetHeight + padding;
             bubbleSpeeds[i] = speed;
             bubbleSizes[i] = radius;
-            bubblePositions[2 * i] = cx;
-            bubblePositions[2 * i + 1] = cy;
+            bubbleOrigins[2 * i] = cx;
+            bubbleOrigins[2 * i + 1] = cy;
         }
     }
 
@@ -585,6 +646,9 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
 					.fromColor(widgetColor)
 					.toColor(pauseColor);
 		}
+		if (frameClock.usesKeyframes()) {
+			colorChanger.keyframes(FrameClock.keyframesCount(COLLAPSE_SIZE_END_F - COLLAPSE_SIZE_START_F));
+		}
 		startCollapseAnimation();
         return true;
 	}
@@ -647,6 +711,34 @@ class ExpandCollapseWidget extends View implements PlaybackState.PlaybackStateLi
         }
     }
 
+    /**
+     * Collect frame and draw timings of view's animations.
+     * @param frameTracker frame tracker
+     */
+    void frameTracker(@NonNull FrameTracker frameTracker) {
+        this.frameTracker = frameTracker;
+        expandAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.EXPAND));
+        collapseAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.COLLAPSE));
+        touchDownAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.EXPANDED_WIDGET));
+        touchUpAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.EXPANDED_WIDGET));
+        bubblesTouchAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.EXPANDED_WIDGET));
+    }
+
+    /**
+     * Release view. Stops all animations and unsubscribes from playback state changes.
+     * View can't be used after this call.
+     */
+    public void release() {
+        expandAnimator.cancel();
+        collapseAnimator.cancel();
+        touchDownAnimator.cancel();
+        touchUpAnimator.cancel();
+        bubblesTouchAnimator.cancel();
+        playbackState.removePlaybackStateListener(this);
+        onWidgetStateChangedListener = null;
+        onControlsClickListener = null;
+    }
+
     public TouchManager.BoundsChecker newBoundsChecker(int offsetX, int offsetY) {
         return new BoundsCheckerImpl(radius, padding, widgetWidth, widgetHeight, offsetX, offsetY);
     }
@@ -0,0 +1,127 @@
+package com.cleveroad.audiowidget;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.view.WindowManager;
+
+/**
+ * Timing model of widget animations based on display refresh rate. Animators are sampled at
+ * frame boundaries of the display: play time is quantized to whole frames since animation start
+ * and frames that were already evaluated are skipped (see {@link Sampler}).
+ * <p>
+ * On displays faster than {@link #KEYFRAME_RATE} expensive values (colors) are precomputed as
+ * keyframes at that rate and interpolated in between instead of being evaluated on every frame.
+ */
+class FrameClock {
+
+	/**
+	 * Rate of precomputed keyframes, frames per second.
+	 */
+	static final float KEYFRAME_RATE = 60;
+	static final float KEYFRAME_INTERVAL = 1000 / KEYFRAME_RATE;
+
+	private final float refreshRate;
+	private final float frameInterval;
+
+	/**
+	 * Create new clock.
+	 * @param refreshRate display refresh rate, frames per second
+	 */
+	FrameClock(float refreshRate) {
+		// some devices report 0 or nonsense values
+		this.refreshRate = refreshRate >= 10 ? refreshRate : KEYFRAME_RATE;
+		this.frameInterval = 1000 / this.refreshRate;
+	}
+
+	/**
+	 * Create clock for refresh rate of default display.
+	 * @param context instance of context
+	 * @return new clock
+	 */
+	@NonNull
+	static FrameClock forDefaultDisplay(@NonNull Context context) {
+		WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+		return new FrameClock(windowManager.getDefaultDisplay().getRefreshRate());
+	}
+
+	float refreshRate() {
+		return refreshRate;
+	}
+
+	/**
+	 * Get interval between frames.
+	 * @return frame interval in milliseconds
+	 */
+	float frameInterval() {
+		return frameInterval;
+	}
+
+	/**
+	 * Check if display is faster than keyframes rate, so values should be interpolated
+	 * between precomputed keyframes.
+	 * @return true if keyframes should be used
+	 */
+	boolean usesKeyframes() {
+		return refreshRate > KEYFRAME_RATE * 1.1f;
+	}
+
+	/**
+	 * Get number of keyframes needed to cover animation segment.
+	 * @param duration duration of segment in milliseconds
+	 * @return number of keyframes including both ends
+	 */
+	static int keyframesCount(float duration) {
+		return Math.max(2, (int) Math.ceil(duration / KEYFRAME_INTERVAL) + 1);
+	}
+
+	/**
+	 * Create new sampler. Each animator must get its own sampler.
+	 * @param duration duration of animator in milliseconds
+	 * @return new sampler
+	 */
+	@NonNull
+	Sampler newSampler(long duration) {
+		return new Sampler(frameInterval, duration);
+	}
+
+	/**
+	 * Sampler of animator play time quantized to display frames.
+	 */
+	static final class Sampler {
+
+		private final float frameInterval;
+		private final long duration;
+		private int lastFrame;
+
+		private Sampler(float frameInterval, long duration) {
+			this.frameInterval = frameInterval;
+			this.duration = duration;
+			reset();
+		}
+
+		/**
+		 * Reset sampler. Must be called when animation starts.
+		 */
+		void reset() {
+			lastFrame = -1;
+		}
+
+		/**
+		 * Sample animator.
+		 * @param animator animator
+		 * @return play time at frame boundary or -1 if this frame was already evaluated
+		 */
+		long sample(@NonNull ValueAnimator animator) {
+			float fraction = animator.getAnimatedFraction();
+			// last frame must always land exactly on the end of animation
+			int frame = fraction >= 1 ? Integer.MAX_VALUE : Math.round(fraction * duration / frameInterval);
+			if (frame == lastFrame)
+				return -1;
+			lastFrame = frame;
+			if (frame == Integer.MAX_VALUE)
+				return duration;
+			return Math.min(duration, (long) (frame * frameInterval));
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package com.cleveroad.audiowidget;
+
+import android.animation.Animator;
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+/**
+ * Collector of frame and draw timings of widget animations. Frames are counted with
+ * {@link Choreographer} frame callbacks on Jelly Bean and above; on older versions only draw
+ * timings are collected.
+ * <p>
+ * Views report their draw calls with {@link #drawCalls(WidgetMetrics.DrawCall, int)} between
+ * {@link #beginDraw()} and {@link #endDraw(Canvas)}, so both software and hardware
+ * accelerated draws are counted. Raster area of draw is taken from canvas clip bounds.
+ * <p>
+ * Must be used on the main thread.
+ */
+class FrameTracker {
+
+    private static final int ANIMATIONS_COUNT = WidgetMetrics.Animation.values().length;
+    private static final int DRAW_CALLS_COUNT = WidgetMetrics.DrawCall.values().length;
+
+    private final long frameIntervalNanos;
+    private final int[] activeCounts;
+    private final int[] frames;
+    private final int[] lateFrames;
+    private final int[] droppedFrames;
+    private final int[] droppedStreaks;
+    private final int[] longestDroppedStreaks;
+    private final int[] draws;
+    private final long[] drawTimes;
+    private final long[] maxDrawTimes;
+    private final int[] drawCalls;
+    private final long[] rasterAreas;
+    private final Rect clipBounds;
+
+    private int activeTotal;
+    private long drawStart;
+    private FrameCallbackDriver driver;
+
+    /**
+     * Create new tracker.
+     * @param frameIntervalNanos expected interval between frames in nanoseconds
+     */
+    FrameTracker(long frameIntervalNanos) {
+        this.frameIntervalNanos = frameIntervalNanos;
+        activeCounts = new int[ANIMATIONS_COUNT];
+        frames = new int[ANIMATIONS_COUNT];
+        lateFrames = new int[ANIMATIONS_COUNT];
+        droppedFrames = new int[ANIMATIONS_COUNT];
+        droppedStreaks = new int[ANIMATIONS_COUNT];
+        longestDroppedStreaks = new int[ANIMATIONS_COUNT];
+        draws = new int[ANIMATIONS_COUNT];
+        drawTimes = new long[ANIMATIONS_COUNT];
+        maxDrawTimes = new long[ANIMATIONS_COUNT];
+        drawCalls = new int[ANIMATIONS_COUNT * DRAW_CALLS_COUNT];
+        rasterAreas = new long[ANIMATIONS_COUNT];
+        clipBounds = new Rect();
+    }
+
+    /**
+     * Mark animation as running.
+     * @param animation animation
+     */
+    void begin(@NonNull WidgetMetrics.Animation animation) {
+        int index = animation.ordinal();
+        if (activeCounts[index]++ == 0) {
+            droppedStreaks[index] = 0;
+        }
+        activeTotal++;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (driver == null) {
+                driver = new FrameCallbackDriver(this);
+            }
+            driver.start();
+        }
+    }
+
+    /**
+     * Mark animation as finished.
+     * @param animation animation
+     */
+    void end(@NonNull WidgetMetrics.Animation animation) {
+        int index = animation.ordinal();
+        if (activeCounts[index] == 0)
+            return;
+        activeCounts[index]--;
+        activeTotal--;
+    }
+
+    /**
+     * Create animator listener that marks animation as running while animator runs.
+     * Each animator must get its own listener.
+     * @param animation animation
+     * @return new animator listener
+     */
+    Animator.AnimatorListener listener(@NonNull WidgetMetrics.Animation animation) {
+        return new SimpleAnimatorListener() {
+
+            private boolean running;
+
+            @Override
+            public void onAnimationStart(Animator a) {
+                // restarting running animator doesn't notify about its end
+                if (running)
+                    return;
+                running = true;
+                begin(animation);
+            }
+
+            @Override
+            public void onAnimationEnd(Animator a) {
+                if (!running)
+                    return;
+                running = false;
+                end(animation);
+            }
+        };
+    }
+
+    /**
+     * Start measuring draw.
+     */
+    void beginDraw() {
+        drawStart = activeTotal == 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Count draw calls issued by view during draw started with {@link #beginDraw()}.
+     * Ignored if no animation is running.
+     * @param drawCall type of draw calls
+     * @param count number of draw calls
+     */
+    void drawCalls(@NonNull WidgetMetrics.DrawCall drawCall, int count) {
+        if (drawStart == 0)
+            return;
+        for (int i = 0; i < ANIMATIONS_COUNT; i++) {
+            if (activeCounts[i] != 0) {
+                drawCalls[i * DRAW_CALLS_COUNT + drawCall.ordinal()] += count;
+            }
+        }
+    }
+
+    /**
+     * Finish measuring draw started with {@link #beginDraw()}.
+     * @param canvas canvas view is drawn on
+     */
+    void endDraw(@NonNull Canvas canvas) {
+        if (drawStart == 0)
+            return;
+        long duration = System.nanoTime() - drawStart;
+        drawStart = 0;
+        long area = 0;
+        if (canvas.getClipBounds(clipBounds)) {
+            area = (long) clipBounds.width() * clipBounds.height();
+        }
+        for (int i = 0; i < ANIMATIONS_COUNT; i++) {
+            if (activeCounts[i] == 0)
+                continue;
+            draws[i]++;
+            drawTimes[i] += duration;
+            if (duration > maxDrawTimes[i]) {
+                maxDrawTimes[i] = duration;
+            }
+            rasterAreas[i] += area;
+        }
+    }
+
+    /**
+     * Process frame delivered after previous one.
+     * @param intervalNanos time elapsed since previous frame
+     * @return true if any animation is still running, false otherwise
+     */
+    private boolean onFrame(long intervalNanos) {
+        int dropped = 0;
+        if (intervalNanos > frameIntervalNanos + frameIntervalNanos / 2) {
+            dropped = (int) ((intervalNanos + frameIntervalNanos / 2) / frameIntervalNanos) - 1;
+        }
+        for (int i = 0; i < ANIMATIONS_COUNT; i++) {
+            if (activeCounts[i] == 0)
+                continue;
+            frames[i]++;
+            if (dropped > 0) {
+                lateFrames[i]++;
+                droppedFrames[i] += dropped;
+                droppedStreaks[i] += dropped;
+                if (droppedStreaks[i] > longestDroppedStreaks[i]) {
+                    longestDroppedStreaks[i] = droppedStreaks[i];
+                }
+            } else {
+                droppedStreaks[i] = 0;
+            }
+        }
+        return activeTotal > 0;
+    }
+
+    /**
+     * Reset collected metrics.
+     */
+    void reset() {
+        for (int i = 0; i < ANIMATIONS_COUNT; i++) {
+            frames[i] = 0;
+            lateFrames[i] = 0;
+            droppedFrames[i] = 0;
+            droppedStreaks[i] = 0;
+            longestDroppedStreaks[i] = 0;
+            draws[i] = 0;
+            drawTimes[i] = 0;
+            maxDrawTimes[i] = 0;
+            rasterAreas[i] = 0;
+        }
+        for (int i = 0; i < drawCalls.length; i++) {
+            drawCalls[i] = 0;
+        }
+    }
+
+    /**
+     * Create snapshot of collected metrics.
+     * @return metrics snapshot
+     */
+    @NonNull
+    WidgetMetrics snapshot() {
+        WidgetMetrics.AnimationMetrics[] metrics = new WidgetMetrics.AnimationMetrics[ANIMATIONS_COUNT];
+        for (int i = 0; i < ANIMATIONS_COUNT; i++) {
+            int[] calls = new int[DRAW_CALLS_COUNT];
+            System.arraycopy(drawCalls, i * DRAW_CALLS_COUNT, calls, 0, DRAW_CALLS_COUNT);
+            metrics[i] = new WidgetMetrics.AnimationMetrics(frames[i], lateFrames[i], droppedFrames[i],
+                    longestDroppedStreaks[i], draws[i], drawTimes[i], maxDrawTimes[i], calls, rasterAreas[i]);
+        }
+        return new WidgetMetrics(metrics, frameIntervalNanos);
+    }
+
+    /**
+     * Helper class that delivers frames to tracker while animations are running.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbackDriver implements Choreographer.FrameCallback {
+
+        private final FrameTracker tracker;
+        private final Choreographer choreographer;
+        private boolean posted;
+        private long lastFrameTimeNanos;
+
+        FrameCallbackDriver(@NonNull FrameTracker tracker) {
+            this.tracker = tracker;
+            this.choreographer = Choreographer.getInstance();
+        }
+
+        void start() {
+            if (posted)
+                return;
+            posted = true;
+            lastFrameTimeNanos = 0;
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            boolean running = true;
+            if (lastFrameTimeNanos != 0) {
+                running = tracker.onFrame(frameTimeNanos - lastFrameTimeNanos);
+            }
+            if (running) {
+                lastFrameTimeNanos = frameTimeNanos;
+                choreographer.postFrameCallback(this);
+            } else {
+                posted = false;
+            }
+        }
+    }
+}
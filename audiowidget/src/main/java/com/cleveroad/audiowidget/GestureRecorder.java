@@ -0,0 +1,93 @@
+package com.cleveroad.audiowidget;
+
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Recorder of touch events received by widget. Recorded gestures can be written to a compact
+ * binary file and replayed with {@link GestureReplayer}.
+ * <p>
+ * File format (big endian): magic {@code 'AWGT'}, version byte, events count int, then for each
+ * event: target byte, action byte, down time and event time ints (milliseconds since first event),
+ * x, y, raw x, raw y floats.
+ * <p>
+ * Events are buffered in memory, so recorder must be used on the main thread.
+ */
+public class GestureRecorder {
+
+    static final int MAGIC = 0x41574754;
+    static final int VERSION = 1;
+    static final int TARGET_COLLAPSED = 0;
+    static final int TARGET_EXPANDED = 1;
+
+    private final ByteArrayOutputStream buffer;
+    private final DataOutputStream output;
+    private long startTime = -1;
+    private int eventsCount;
+
+    public GestureRecorder() {
+        buffer = new ByteArrayOutputStream(4096);
+        output = new DataOutputStream(buffer);
+    }
+
+    /**
+     * Record event.
+     * @param target view that received event
+     * @param event touch event
+     */
+    void record(int target, @NonNull MotionEvent event) {
+        if (startTime == -1) {
+            startTime = event.getDownTime();
+        }
+        try {
+            output.writeByte(target);
+            output.writeByte(event.getActionMasked());
+            output.writeInt((int) (event.getDownTime() - startTime));
+            output.writeInt((int) (event.getEventTime() - startTime));
+            output.writeFloat(event.getX());
+            output.writeFloat(event.getY());
+            output.writeFloat(event.getRawX());
+            output.writeFloat(event.getRawY());
+        } catch (IOException e) {
+            // can't happen: writing to memory
+            throw new IllegalStateException(e);
+        }
+        eventsCount++;
+    }
+
+    /**
+     * Get number of recorded events.
+     * @return number of events
+     */
+    public int eventsCount() {
+        return eventsCount;
+    }
+
+    /**
+     * Discard recorded events.
+     */
+    public void clear() {
+        buffer.reset();
+        startTime = -1;
+        eventsCount = 0;
+    }
+
+    /**
+     * Write recorded events to stream. Stream is not closed.
+     * @param outputStream output stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(eventsCount);
+        buffer.writeTo(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,165 @@
+package com.cleveroad.audiowidget;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replayer of gestures recorded with {@link GestureRecorder}.
+ * <p>
+ * Events can be dispatched one by one with explicit event time base ({@link #dispatchNext(AudioWidget, long)})
+ * or in real time with {@link #replay(AudioWidget, Handler)}. Widget's animations, long press
+ * and delayed actions run on the main looper, so replay is deterministic when the looper's
+ * clock is controlled, e.g. by Robolectric's scheduler that advances it only between events.
+ * Must be used on the main thread.
+ */
+public class GestureReplayer {
+
+    private static final int EVENT_SIZE = 2 + 4 * 2 + 4 * 4;
+
+    private final byte[] targets;
+    private final int[] actions;
+    private final int[] downTimes;
+    private final int[] eventTimes;
+    private final float[] coordinates;
+    private int position;
+
+    private GestureReplayer(int eventsCount) {
+        targets = new byte[eventsCount];
+        actions = new int[eventsCount];
+        downTimes = new int[eventsCount];
+        eventTimes = new int[eventsCount];
+        coordinates = new float[eventsCount * 4];
+    }
+
+    /**
+     * Read gesture file. Stream is not closed.
+     * @param inputStream input stream
+     * @return new replayer
+     * @throws IOException if an I/O error occurs or file has wrong format
+     */
+    @NonNull
+    public static GestureReplayer read(@NonNull InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != GestureRecorder.MAGIC) {
+            throw new IOException("Not a gesture file.");
+        }
+        int version = in.readUnsignedByte();
+        if (version != GestureRecorder.VERSION) {
+            throw new IOException("Unsupported gesture file version: " + version);
+        }
+        int eventsCount = in.readInt();
+        if (eventsCount < 0) {
+            throw new IOException("Wrong events count: " + eventsCount);
+        }
+        GestureReplayer replayer = new GestureReplayer(eventsCount);
+        for (int i = 0; i < eventsCount; i++) {
+            replayer.targets[i] = in.readByte();
+            replayer.actions[i] = in.readUnsignedByte();
+            replayer.downTimes[i] = in.readInt();
+            replayer.eventTimes[i] = in.readInt();
+            for (int k = 0; k < 4; k++) {
+                replayer.coordinates[4 * i + k] = in.readFloat();
+            }
+        }
+        return replayer;
+    }
+
+    /**
+     * Get number of events.
+     * @return number of events
+     */
+    public int eventsCount() {
+        return actions.length;
+    }
+
+    /**
+     * Get duration of recorded gestures.
+     * @return duration in milliseconds
+     */
+    public long duration() {
+        return actions.length == 0 ? 0 : eventTimes[actions.length - 1];
+    }
+
+    /**
+     * Get size of gesture file.
+     * @return size in bytes
+     */
+    public int fileSize() {
+        return 9 + actions.length * EVENT_SIZE;
+    }
+
+    /**
+     * Get offset of next event's time from the first event.
+     * @return time offset in milliseconds or -1 if all events dispatched
+     */
+    public long nextEventOffset() {
+        return hasNext() ? eventTimes[position] : -1;
+    }
+
+    /**
+     * Check if there are events to dispatch.
+     * @return true if there are events to dispatch, false otherwise
+     */
+    public boolean hasNext() {
+        return position < actions.length;
+    }
+
+    /**
+     * Rewind replayer to the first event.
+     */
+    public void rewind() {
+        position = 0;
+    }
+
+    /**
+     * Dispatch next event to widget.
+     * @param audioWidget widget
+     * @param baseTime time (in {@link SystemClock#uptimeMillis()} base) of the first event;
+     *                 recorded times are shifted relatively to it
+     * @return true if event was dispatched, false if all events already dispatched
+     */
+    public boolean dispatchNext(@NonNull AudioWidget audioWidget, long baseTime) {
+        if (!hasNext())
+            return false;
+        int i = position++;
+        float x = coordinates[4 * i];
+        float y = coordinates[4 * i + 1];
+        float rawX = coordinates[4 * i + 2];
+        float rawY = coordinates[4 * i + 3];
+        MotionEvent event = MotionEvent.obtain(baseTime + downTimes[i], baseTime + eventTimes[i], actions[i], rawX, rawY, 0);
+        event.offsetLocation(x - rawX, y - rawY);
+        try {
+            audioWidget.dispatchGestureEvent(targets[i], event);
+        } finally {
+            event.recycle();
+        }
+        return true;
+    }
+
+    /**
+     * Replay remaining events in real time.
+     * @param audioWidget widget
+     * @param handler handler of the main thread
+     */
+    public void replay(@NonNull AudioWidget audioWidget, @NonNull Handler handler) {
+        if (!hasNext())
+            return;
+        long baseTime = SystemClock.uptimeMillis() - eventTimes[position];
+        Runnable action = new Runnable() {
+            @Override
+            public void run() {
+                dispatchNext(audioWidget, baseTime);
+                if (hasNext()) {
+                    handler.postAtTime(this, baseTime + eventTimes[position]);
+                }
+            }
+        };
+        handler.postAtTime(action, baseTime + eventTimes[position]);
+    }
+}
@@ -0,0 +1,150 @@
+package com.cleveroad.audiowidget;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Default widget icons packed into single bitmap ({@code aw_ic_atlas}). Icons are square cells
+ * laid out in a row in order of {@code ICON_*} constants. Atlas is decoded once instead of six
+ * separate icons, and all icons are drawn from the same bitmap, so their draws can be batched.
+ */
+class IconAtlas {
+
+	static final int ICON_PLAY = 0;
+	static final int ICON_PAUSE = 1;
+	static final int ICON_PREV = 2;
+	static final int ICON_NEXT = 3;
+	static final int ICON_PLAYLIST = 4;
+	static final int ICON_ALBUM = 5;
+	private static final int ICONS_COUNT = 6;
+
+	private final Bitmap bitmap;
+	private final int cellSize;
+
+	private IconAtlas(@NonNull Bitmap bitmap) {
+		this.bitmap = bitmap;
+		this.cellSize = bitmap.getHeight();
+	}
+
+	/**
+	 * Decode atlas.
+	 * @param resources resources
+	 * @return decoded atlas or null if atlas can't be decoded
+	 */
+	@Nullable
+	static IconAtlas decode(@NonNull Resources resources) {
+		Bitmap bitmap = BitmapFactory.decodeResource(resources, R.drawable.aw_ic_atlas);
+		if (bitmap == null || bitmap.getWidth() < bitmap.getHeight() * ICONS_COUNT) {
+			return null;
+		}
+		return new IconAtlas(bitmap);
+	}
+
+	/**
+	 * Create drawable of icon.
+	 * @param icon one of {@code ICON_*} constants
+	 * @return new drawable
+	 */
+	@NonNull
+	Drawable icon(int icon) {
+		Rect region = new Rect(icon * cellSize, 0, (icon + 1) * cellSize, cellSize);
+		return new AtlasDrawable(new AtlasState(bitmap, region));
+	}
+
+	/**
+	 * Shared state of atlas drawables: atlas bitmap and region of icon.
+	 */
+	private static final class AtlasState extends Drawable.ConstantState {
+
+		private final Bitmap bitmap;
+		private final Rect region;
+
+		AtlasState(@NonNull Bitmap bitmap, @NonNull Rect region) {
+			this.bitmap = bitmap;
+			this.region = region;
+		}
+
+		@Override
+		public Drawable newDrawable() {
+			return new AtlasDrawable(this);
+		}
+
+		@Override
+		public int getChangingConfigurations() {
+			return 0;
+		}
+	}
+
+	/**
+	 * Drawable that draws region of atlas bitmap.
+	 */
+	private static final class AtlasDrawable extends Drawable {
+
+		private final AtlasState state;
+		private final Paint paint;
+
+		AtlasDrawable(@NonNull AtlasState state) {
+			this.state = state;
+			this.paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+		}
+
+		@Override
+		public void draw(@NonNull Canvas canvas) {
+			canvas.drawBitmap(state.bitmap, state.region, getBounds(), paint);
+		}
+
+		@Override
+		public void setAlpha(int alpha) {
+			if (paint.getAlpha() != alpha) {
+				paint.setAlpha(alpha);
+				invalidateSelf();
+			}
+		}
+
+		@Override
+		public int getAlpha() {
+			return paint.getAlpha();
+		}
+
+		@Override
+		public void setColorFilter(ColorFilter colorFilter) {
+			paint.setColorFilter(colorFilter);
+			invalidateSelf();
+		}
+
+		@Override
+		public int getOpacity() {
+			return PixelFormat.TRANSLUCENT;
+		}
+
+		@Override
+		public int getIntrinsicWidth() {
+			return state.region.width();
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return state.region.height();
+		}
+
+		@Override
+		public ConstantState getConstantState() {
+			return state;
+		}
+
+		@Override
+		public Drawable mutate() {
+			// paint is never shared, state is immutable
+			return this;
+		}
+	}
+}
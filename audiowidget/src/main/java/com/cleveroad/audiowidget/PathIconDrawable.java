@@ -0,0 +1,233 @@
+package com.cleveroad.audiowidget;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+/**
+ * Outlined media glyph built as path. Path is cached and rebuilt only when bounds or morph
+ * fraction change, so glyph is crisp at any size and needs no bitmap memory.
+ * <p>
+ * Play and pause glyphs can morph into each other: pause bars are reshaped into play triangle
+ * (see {@link #morph(float)}).
+ */
+class PathIconDrawable extends Drawable {
+
+	static final int GLYPH_PLAY = 0;
+	static final int GLYPH_PAUSE = 1;
+	static final int GLYPH_PREV = 2;
+	static final int GLYPH_NEXT = 3;
+
+	/**
+	 * Glyphs geometry in unit square, measured from default bitmap icons.
+	 */
+	private static final float STROKE_WIDTH = 0.07f;
+	private static final float PLAY_LEFT = 0.28f;
+	private static final float PLAY_RIGHT = 0.86f;
+	private static final float PLAY_TOP = 0.17f;
+	private static final float PLAY_BOTTOM = 0.83f;
+	private static final float PAUSE_LEFT_BAR_LEFT = 0.24f;
+	private static final float PAUSE_LEFT_BAR_RIGHT = 0.43f;
+	private static final float PAUSE_RIGHT_BAR_LEFT = 0.55f;
+	private static final float PAUSE_RIGHT_BAR_RIGHT = 0.74f;
+	private static final float PAUSE_TOP = 0.19f;
+	private static final float PAUSE_BOTTOM = 0.81f;
+	private static final float SKIP_LEFT = 0.26f;
+	private static final float SKIP_MIDDLE = 0.57f;
+	private static final float SKIP_RIGHT = 0.74f;
+	private static final float SKIP_TOP = 0.28f;
+	private static final float SKIP_BOTTOM = 0.69f;
+
+	private final State state;
+	private final Paint paint;
+	private final Path path;
+	private float morph;
+	private boolean pathValid;
+
+	/**
+	 * Create new glyph drawable.
+	 * @param glyph one of {@code GLYPH_*} constants
+	 * @param color color of glyph
+	 */
+	PathIconDrawable(int glyph, @ColorInt int color) {
+		this(new State(glyph, color));
+	}
+
+	private PathIconDrawable(@NonNull State state) {
+		this.state = state;
+		this.paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		this.paint.setStyle(Paint.Style.STROKE);
+		this.paint.setStrokeJoin(Paint.Join.ROUND);
+		this.paint.setStrokeCap(Paint.Cap.ROUND);
+		this.paint.setColor(state.color);
+		this.path = new Path();
+		this.morph = state.glyph == GLYPH_PAUSE ? 1 : 0;
+	}
+
+	/**
+	 * Check if glyph can morph between play and pause shapes.
+	 * @return true if glyph is play or pause glyph
+	 */
+	boolean isMorphable() {
+		return state.glyph == GLYPH_PLAY || state.glyph == GLYPH_PAUSE;
+	}
+
+	/**
+	 * Set morph fraction of play/pause glyph.
+	 * @param morph 0 for play shape, 1 for pause shape
+	 */
+	void morph(float morph) {
+		if (!isMorphable() || this.morph == morph)
+			return;
+		this.morph = morph;
+		pathValid = false;
+		invalidateSelf();
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		super.onBoundsChange(bounds);
+		pathValid = false;
+	}
+
+	@Override
+	public void draw(@NonNull Canvas canvas) {
+		Rect bounds = getBounds();
+		if (bounds.isEmpty())
+			return;
+		if (!pathValid) {
+			buildPath(bounds);
+			pathValid = true;
+		}
+		canvas.drawPath(path, paint);
+	}
+
+	private void buildPath(@NonNull Rect bounds) {
+		float size = Math.min(bounds.width(), bounds.height());
+		float left = bounds.exactCenterX() - size / 2;
+		float top = bounds.exactCenterY() - size / 2;
+		paint.setStrokeWidth(STROKE_WIDTH * size);
+		path.reset();
+		switch (state.glyph) {
+			case GLYPH_PLAY:
+			case GLYPH_PAUSE: {
+				float playMiddle = (PLAY_TOP + PLAY_BOTTOM) / 2;
+				// each pause bar turns into the whole triangle; right bar edge collapses into apex
+				addMorphedQuad(left, top, size, PAUSE_LEFT_BAR_LEFT, PAUSE_LEFT_BAR_RIGHT, playMiddle);
+				addMorphedQuad(left, top, size, PAUSE_RIGHT_BAR_LEFT, PAUSE_RIGHT_BAR_RIGHT, playMiddle);
+				break;
+			}
+			case GLYPH_NEXT:
+				addSkipGlyph(left, top, size, false);
+				break;
+			case GLYPH_PREV:
+				addSkipGlyph(left, top, size, true);
+				break;
+			default:
+				throw new IllegalStateException("Unknown glyph: " + state.glyph);
+		}
+	}
+
+	private void addMorphedQuad(float left, float top, float size, float barLeft, float barRight, float playMiddle) {
+		float t = morph;
+		float l = lerp(PLAY_LEFT, barLeft, t);
+		float r = lerp(PLAY_RIGHT, barRight, t);
+		float outerTop = lerp(PLAY_TOP, PAUSE_TOP, t);
+		float outerBottom = lerp(PLAY_BOTTOM, PAUSE_BOTTOM, t);
+		float innerTop = lerp(playMiddle, PAUSE_TOP, t);
+		float innerBottom = lerp(playMiddle, PAUSE_BOTTOM, t);
+		path.moveTo(left + l * size, top + outerTop * size);
+		path.lineTo(left + r * size, top + innerTop * size);
+		path.lineTo(left + r * size, top + innerBottom * size);
+		path.lineTo(left + l * size, top + outerBottom * size);
+		path.close();
+	}
+
+	private void addSkipGlyph(float left, float top, float size, boolean mirror) {
+		float triangleBase = mirrorX(SKIP_LEFT, mirror);
+		float apex = mirrorX(SKIP_MIDDLE, mirror);
+		float barOuter = mirrorX(SKIP_RIGHT, mirror);
+		path.moveTo(left + triangleBase * size, top + SKIP_TOP * size);
+		path.lineTo(left + apex * size, top + (SKIP_TOP + SKIP_BOTTOM) / 2 * size);
+		path.lineTo(left + triangleBase * size, top + SKIP_BOTTOM * size);
+		path.close();
+		path.moveTo(left + apex * size, top + SKIP_TOP * size);
+		path.lineTo(left + barOuter * size, top + SKIP_TOP * size);
+		path.lineTo(left + barOuter * size, top + SKIP_BOTTOM * size);
+		path.lineTo(left + apex * size, top + SKIP_BOTTOM * size);
+		path.close();
+	}
+
+	private static float mirrorX(float x, boolean mirror) {
+		return mirror ? 1 - x : x;
+	}
+
+	private static float lerp(float from, float to, float t) {
+		return from + (to - from) * t;
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		if (paint.getAlpha() != alpha) {
+			paint.setAlpha(alpha);
+			invalidateSelf();
+		}
+	}
+
+	@Override
+	public int getAlpha() {
+		return paint.getAlpha();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter colorFilter) {
+		paint.setColorFilter(colorFilter);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	@Override
+	public ConstantState getConstantState() {
+		return state;
+	}
+
+	@Override
+	public Drawable mutate() {
+		// paint and path are never shared, state is immutable
+		return this;
+	}
+
+	/**
+	 * Shared state of glyph drawables.
+	 */
+	private static final class State extends ConstantState {
+
+		private final int glyph;
+		private final int color;
+
+		State(int glyph, int color) {
+			this.glyph = glyph;
+			this.color = color;
+		}
+
+		@Override
+		public Drawable newDrawable() {
+			return new PathIconDrawable(this);
+		}
+
+		@Override
+		public int getChangingConfigurations() {
+			return 0;
+		}
+	}
+}
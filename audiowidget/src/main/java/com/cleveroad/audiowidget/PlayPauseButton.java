@@ -8,6 +8,7 @@ import android.graphics.Paint;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 import android.view.animation.LinearInterpolator;
 
@@ -28,6 +29,10 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 	private static final int TOTAL_BUBBLES_COUNT = (int) (360 / BUBBLES_ANGLE_STEP);
 	static final long PROGRESS_CHANGES_DURATION = (long) (6 * Configuration.FRAME_SPEED);
     private static final long PROGRESS_STEP_DURATION = (long) (3 * Configuration.FRAME_SPEED);
+	private static final float TOUCHED_BUTTON_SIZE = 0.9f;
+	private static final int INDEX_PLAY = 0;
+	private static final int INDEX_PAUSE = 1;
+	private static final float[] BUBBLES_ALPHA_FUNCTION = {0, 0, 0, 0.3f, 255, 0.5f, 225, 0.7f, 0, 1f};
 
     private final Paint buttonPaint;
 	private final Paint bubblesPaint;
@@ -37,10 +42,23 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 	private final float[] bubbleSizes;
 	private final float[] bubbleSpeeds;
 	private final float[] bubbleSpeedCoefficients;
+	private final float[] bubblePositions;
 	private final Random random;
 	private final ColorChanger colorChanger;
+	private final FrameClock frameClock;
+	private final FrameClock.Sampler bubblesSampler;
 	private final Drawable playDrawable;
 	private final Drawable pauseDrawable;
+	/**
+	 * Procedural play/pause glyph used instead of cross-fading two drawables. Null if icons aren't procedural.
+	 */
+	@Nullable
+	private final PathIconDrawable morphDrawable;
+	/**
+	 * Pre-blurred button shadow. Null if shadow is disabled.
+	 */
+	@Nullable
+	private final ShadowCache.Shadow shadow;
 	private final RectF bounds;
 	private final float radius;
 	private final PlaybackState playbackState;
@@ -57,23 +75,32 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 	private float buttonSize = 1.0f;
 	private float progress = 0.0f;
 	private float animatedProgress = 0;
+	private float progressFrom;
+	private float progressTo;
 	private boolean progressChangesEnabled;
-
-    public PlayPauseButton(@NonNull Configuration configuration) {
+	@Nullable
+	private FrameTracker frameTracker;
+
+    /**
+     * Create new play/pause button.
+     * @param configuration widget configuration
+     * @param drawables mutable drawables created with {@link #mutateDrawables(Configuration)}
+     */
+    public PlayPauseButton(@NonNull Configuration configuration, @NonNull Drawable[] drawables) {
 		super(configuration.context());
-		setLayerType(LAYER_TYPE_SOFTWARE, null);
 		this.playbackState = configuration.playbackState();
 		this.random = configuration.random();
 		this.buttonPaint = new Paint();
 		this.buttonPaint.setColor(configuration.lightColor());
 		this.buttonPaint.setStyle(Paint.Style.FILL);
 		this.buttonPaint.setAntiAlias(true);
-		this.buttonPaint.setShadowLayer(
-                configuration.shadowRadius(),
-                configuration.shadowDx(),
-                configuration.shadowDy(),
-                configuration.shadowColor()
-        );
+		this.shadow = ShadowCache.circleShadow(
+				configuration.radius(),
+				configuration.shadowRadius(),
+				configuration.shadowDx(),
+				configuration.shadowDy(),
+				configuration.shadowColor()
+		);
         this.bubblesMinSize = configuration.bubblesMinSize();
         this.bubblesMaxSize = configuration.bubblesMaxSize();
 		this.bubblesPaint = new Paint();
@@ -91,25 +118,37 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 		this.bubbleSizes = new float[TOTAL_BUBBLES_COUNT];
 		this.bubbleSpeeds = new float[TOTAL_BUBBLES_COUNT];
 		this.bubbleSpeedCoefficients = new float[TOTAL_BUBBLES_COUNT];
+		this.bubblePositions = new float[TOTAL_BUBBLES_COUNT * 2];
 		this.colorChanger = new ColorChanger();
-		this.playDrawable = configuration.playDrawable().getConstantState().newDrawable().mutate();
-		this.pauseDrawable = configuration.pauseDrawable().getConstantState().newDrawable().mutate();
+		this.frameClock = configuration.frameClock();
+		this.bubblesSampler = frameClock.newSampler(ANIMATION_TIME_L);
+		this.playDrawable = drawables[INDEX_PLAY];
+		this.pauseDrawable = drawables[INDEX_PAUSE];
 		this.pauseDrawable.setAlpha(0);
+		if (playDrawable instanceof PathIconDrawable && ((PathIconDrawable) playDrawable).isMorphable()
+				&& pauseDrawable instanceof PathIconDrawable && ((PathIconDrawable) pauseDrawable).isMorphable()) {
+			this.morphDrawable = (PathIconDrawable) playDrawable;
+		} else {
+			this.morphDrawable = null;
+		}
 		this.playbackState.addPlaybackStateListener(this);
-		final ValueAnimator.AnimatorUpdateListener listener = animation -> {
-			buttonSize = (float) animation.getAnimatedValue();
+		this.touchDownAnimator = ValueAnimator.ofFloat(1, TOUCHED_BUTTON_SIZE).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
+		this.touchDownAnimator.addUpdateListener(animation -> {
+			buttonSize = 1 - (1 - TOUCHED_BUTTON_SIZE) * animation.getAnimatedFraction();
 			invalidate();
-		};
-		this.touchDownAnimator = ValueAnimator.ofFloat(1, 0.9f).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
-		this.touchDownAnimator.addUpdateListener(listener);
-		this.touchUpAnimator = ValueAnimator.ofFloat(0.9f, 1).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
-		this.touchUpAnimator.addUpdateListener(listener);
+		});
+		this.touchUpAnimator = ValueAnimator.ofFloat(TOUCHED_BUTTON_SIZE, 1).setDuration(Configuration.TOUCH_ANIMATION_DURATION);
+		this.touchUpAnimator.addUpdateListener(animation -> {
+			buttonSize = TOUCHED_BUTTON_SIZE + (1 - TOUCHED_BUTTON_SIZE) * animation.getAnimatedFraction();
+			invalidate();
+		});
 		this.bubblesAnimator = ValueAnimator.ofInt(0, (int)ANIMATION_TIME_L).setDuration(ANIMATION_TIME_L);
         this.bubblesAnimator.setInterpolator(new LinearInterpolator());
 		this.bubblesAnimator.addUpdateListener(animation -> {
-			long position = animation.getCurrentPlayTime();
-			float fraction = animation.getAnimatedFraction();
-			updateBubblesPosition(position, fraction);
+			long position = bubblesSampler.sample(animation);
+			if (position < 0)
+				return;
+			updateBubblesPosition(position, position / ANIMATION_TIME_F);
 			invalidate();
 		});
 		this.bubblesAnimator.addListener(new SimpleAnimatorListener() {
@@ -118,6 +157,7 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 			public void onAnimationStart(Animator animation) {
 				super.onAnimationStart(animation);
 				animatingBubbles = true;
+				bubblesSampler.reset();
 			}
 
 			@Override
@@ -132,13 +172,26 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 				animatingBubbles = false;
 			}
 		});
-		this.progressAnimator = new ValueAnimator();
+		this.progressAnimator = ValueAnimator.ofFloat(0, 1);
 		this.progressAnimator.addUpdateListener(animation -> {
-			animatedProgress = (float) animation.getAnimatedValue();
+			// interpolate manually: getAnimatedValue() boxes value on every frame
+			animatedProgress = progressFrom + (progressTo - progressFrom) * animation.getAnimatedFraction();
 			invalidate();
 		});
 	}
 
+	/**
+	 * Create mutable copies of drawables used by this view.
+	 * @param configuration widget configuration
+	 * @return array of mutable drawables
+	 */
+	static Drawable[] mutateDrawables(@NonNull Configuration configuration) {
+		Drawable[] drawables = new Drawable[2];
+		drawables[INDEX_PLAY] = configuration.playDrawable().getConstantState().newDrawable().mutate();
+		drawables[INDEX_PAUSE] = configuration.pauseDrawable().getConstantState().newDrawable().mutate();
+		return drawables;
+	}
+
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 		int size = MeasureSpec.makeMeasureSpec((int) (radius * 4), MeasureSpec.EXACTLY);
@@ -146,12 +199,13 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 	}
 
 	private void updateBubblesPosition(long position, float fraction) {
-		int alpha = (int) DrawableUtils.customFunction(fraction, 0, 0, 0, 0.3f, 255, 0.5f, 225, 0.7f, 0, 1f);
-		bubblesPaint.setAlpha(alpha);
+		bubblesPaint.setAlpha(Bubbles.alpha(fraction, BUBBLES_ALPHA_FUNCTION));
 		if (DrawableUtils.isBetween(position, COLOR_ANIMATION_TIME_START_F, COLOR_ANIMATION_TIME_END_F)) {
 			float colorDt = DrawableUtils.normalize(position, COLOR_ANIMATION_TIME_START_F, COLOR_ANIMATION_TIME_END_F);
-			buttonPaint.setColor(colorChanger.nextColor(colorDt));
-			if (playbackState.state() == Configuration.STATE_PLAYING) {
+			buttonPaint.setColor(colorChanger.color(colorDt));
+			if (morphDrawable != null) {
+				morphDrawable.morph(playbackState.state() == Configuration.STATE_PLAYING ? colorDt : 1 - colorDt);
+			} else if (playbackState.state() == Configuration.STATE_PLAYING) {
 				pauseDrawable.setAlpha((int) DrawableUtils.between(255 * colorDt, 0, 255));
 				playDrawable.setAlpha((int) DrawableUtils.between(255 * (1 - colorDt), 0, 255));
 			} else {
@@ -159,9 +213,7 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 				pauseDrawable.setAlpha((int) DrawableUtils.between(255 * (1 - colorDt), 0, 255));
 			}
 		}
-		for (int i=0; i<TOTAL_BUBBLES_COUNT; i++) {
-			bubbleSpeeds[i] = fraction * bubbleSpeedCoefficients[i];
-		}
+		Bubbles.updateRadialSpeeds(fraction, bubbleSpeedCoefficients, bubbleSpeeds);
 	}
 
 	public void onClick() {
@@ -183,6 +235,9 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 	}
 
 	private void startBubblesAnimation() {
+		if (frameClock.usesKeyframes()) {
+			colorChanger.keyframes(FrameClock.keyframesCount(COLOR_ANIMATION_TIME_F));
+		}
 		randomStartAngle = 360 * random.nextFloat();
 		for (int i=0; i<TOTAL_BUBBLES_COUNT; i++) {
 			float speed = 0.5f + 0.5f * random.nextFloat();
@@ -208,17 +263,18 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 
 	@Override
 	public void onDraw(@NonNull Canvas canvas) {
+		if (frameTracker != null) {
+			frameTracker.beginDraw();
+		}
 		float cx = getWidth() >> 1;
 		float cy = getHeight() >> 1;
 		canvas.scale(buttonSize, buttonSize, cx, cy);
 		if (animatingBubbles) {
+			Bubbles.radialPositions(cx, cy, randomStartAngle, BUBBLES_ANGLE_STEP, bubbleSpeeds, bubblePositions);
 			for (int i=0; i<TOTAL_BUBBLES_COUNT; i++) {
-				float angle = randomStartAngle + BUBBLES_ANGLE_STEP * i;
-				float speed = bubbleSpeeds[i];
-				float x = DrawableUtils.rotateX(cx, cy * (1 - speed), cx, cy, angle);
-				float y = DrawableUtils.rotateY(cx, cy * (1 - speed), cx, cy, angle);
-				canvas.drawCircle(x, y, bubbleSizes[i], bubblesPaint);
+				canvas.drawCircle(bubblePositions[2 * i], bubblePositions[2 * i + 1], bubbleSizes[i], bubblesPaint);
 			}
+			countDrawCalls(WidgetMetrics.DrawCall.CIRCLE, TOTAL_BUBBLES_COUNT);
 		} else if (playbackState.state() != Configuration.STATE_PLAYING) {
 			playDrawable.setAlpha(255);
 			pauseDrawable.setAlpha(0);
@@ -235,22 +291,53 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
             }
 		}
 
+		if (shadow != null) {
+			shadow.drawCircle(canvas, cx, cy, buttonPaint.getAlpha());
+			countDrawCalls(WidgetMetrics.DrawCall.SHADOW, 1);
+		}
 		canvas.drawCircle(cx, cy, radius, buttonPaint);
 		float padding = progressPaint.getStrokeWidth() / 2f;
 		bounds.set(cx - radius + padding, cy - radius + padding, cx + radius - padding, cy + radius - padding);
 		canvas.drawArc(bounds, -90, animatedProgress, false, progressPaint);
+		countDrawCalls(WidgetMetrics.DrawCall.CIRCLE, 1);
+		countDrawCalls(WidgetMetrics.DrawCall.ARC, 1);
 
 		int l = (int) (cx - radius + buttonPadding);
 		int t = (int) (cy - radius + buttonPadding);
 		int r = (int) (cx + radius - buttonPadding);
 		int b = (int) (cy + radius - buttonPadding);
+		if (morphDrawable != null) {
+			if (!animatingBubbles) {
+				morphDrawable.morph(playbackState.state() == Configuration.STATE_PLAYING ? 1 : 0);
+			}
+			morphDrawable.setAlpha(255);
+			morphDrawable.setBounds(l, t, r, b);
+			morphDrawable.draw(canvas);
+			countDrawCalls(WidgetMetrics.DrawCall.DRAWABLE, 1);
+		} else {
+			drawPlayPauseDrawables(canvas, l, t, r, b);
+		}
+		if (frameTracker != null) {
+			frameTracker.endDraw(canvas);
+		}
+	}
+
+	private void drawPlayPauseDrawables(@NonNull Canvas canvas, int l, int t, int r, int b) {
 		if (animatingBubbles || playbackState.state() != Configuration.STATE_PLAYING) {
 			playDrawable.setBounds(l, t, r, b);
 			playDrawable.draw(canvas);
+			countDrawCalls(WidgetMetrics.DrawCall.DRAWABLE, 1);
 		}
 		if (animatingBubbles || playbackState.state() == Configuration.STATE_PLAYING) {
 			pauseDrawable.setBounds(l, t, r, b);
 			pauseDrawable.draw(canvas);
+			countDrawCalls(WidgetMetrics.DrawCall.DRAWABLE, 1);
+		}
+	}
+
+	private void countDrawCalls(@NonNull WidgetMetrics.DrawCall drawCall, int count) {
+		if (frameTracker != null) {
+			frameTracker.drawCalls(drawCall, count);
 		}
 	}
 
@@ -309,12 +396,25 @@ class PlayPauseButton extends View implements PlaybackState.PlaybackStateListene
 		if (progressAnimator.isRunning()) {
 			return false;
 		}
-		progressAnimator.setFloatValues(oldValue, newValue);
+		progressFrom = oldValue;
+		progressTo = newValue;
 		progressAnimator.setDuration(duration);
 		progressAnimator.start();
         return true;
 	}
 
+	/**
+	 * Collect frame and draw timings of view's animations.
+	 * @param frameTracker frame tracker
+	 */
+	void frameTracker(@NonNull FrameTracker frameTracker) {
+		this.frameTracker = frameTracker;
+		touchDownAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.COLLAPSED_BUTTON));
+		touchUpAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.COLLAPSED_BUTTON));
+		bubblesAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.COLLAPSED_BUTTON));
+		progressAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.COLLAPSED_BUTTON));
+	}
+
     public TouchManager.BoundsChecker newBoundsChecker(int offsetX, int offsetY) {
         return new BoundsCheckerImpl(radius, offsetX, offsetY);
     }
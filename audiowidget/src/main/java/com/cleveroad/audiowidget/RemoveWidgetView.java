@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 
 /**
@@ -17,6 +18,8 @@ class RemoveWidgetView extends View {
 	private final Paint paint;
     private final int defaultColor;
     private final int overlappedColor;
+    @Nullable
+    private FrameTracker frameTracker;
 
 	public RemoveWidgetView(@NonNull Configuration configuration) {
 		super(configuration.context());
@@ -41,11 +44,19 @@ class RemoveWidgetView extends View {
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
+		if (frameTracker != null) {
+			frameTracker.beginDraw();
+		}
 		int cx = canvas.getWidth() >> 1;
 		int cy = canvas.getHeight() >> 1;
 		float rad = radius * 0.75f;
 		canvas.drawCircle(cx, cy, rad, paint);
 		drawCross(canvas, cx, cy, rad * 0.5f, 45);
+		if (frameTracker != null) {
+			frameTracker.drawCalls(WidgetMetrics.DrawCall.CIRCLE, 1);
+			frameTracker.drawCalls(WidgetMetrics.DrawCall.LINE, 2);
+			frameTracker.endDraw(canvas);
+		}
 	}
 
 	private void drawCross(@NonNull Canvas canvas, float cx, float cy, float radius, float startAngle) {
@@ -62,6 +73,14 @@ class RemoveWidgetView extends View {
 		canvas.drawLine(x1, y1, x2, y2, paint);
 	}
 
+    /**
+     * Collect draw timings and draw calls of view.
+     * @param frameTracker frame tracker
+     */
+    void frameTracker(@NonNull FrameTracker frameTracker) {
+        this.frameTracker = frameTracker;
+    }
+
     /**
      * Set overlapped state.
      * @param overlapped true if widget overlapped, false otherwise
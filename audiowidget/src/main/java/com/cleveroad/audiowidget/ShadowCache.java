@@ -0,0 +1,182 @@
+package com.cleveroad.audiowidget;
+
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Cache of pre-blurred shadows shared between all widgets. Shadow of circle is rendered once per
+ * radius, blur radius and color; offset is applied while drawing. Pills (rounded rects with
+ * corner radius equal to half of height) reuse circle shadow stretched in the middle, so shadow of
+ * expanding widget doesn't need to be re-rendered on every frame.
+ * <p>
+ * Drawing shadows as bitmaps allows views to render without forced software layer that
+ * {@link Paint#setShadowLayer(float, float, float, int)} requires. Shadows are held weakly and
+ * released once no view uses them.
+ */
+class ShadowCache {
+
+	private static final Map<Key, WeakReference<Bitmap>> CACHE = new HashMap<>();
+
+	private ShadowCache() {
+
+	}
+
+	/**
+	 * Get shadow of circle.
+	 * @param radius circle radius
+	 * @param shadowRadius blur radius of shadow
+	 * @param shadowColor color of shadow
+	 * @return shadow or null if shadow is disabled (zero blur radius)
+	 */
+	@Nullable
+	static Shadow circleShadow(float radius, float shadowRadius, float dx, float dy, @ColorInt int shadowColor) {
+		if (shadowRadius <= 0)
+			return null;
+		Key key = new Key((int) Math.ceil(radius), (int) Math.ceil(shadowRadius), shadowColor);
+		Bitmap bitmap;
+		synchronized (CACHE) {
+			WeakReference<Bitmap> reference = CACHE.get(key);
+			bitmap = reference == null ? null : reference.get();
+			if (bitmap == null) {
+				removeClearedReferences();
+				bitmap = renderCircleShadow(key);
+				CACHE.put(key, new WeakReference<>(bitmap));
+			}
+		}
+		return new Shadow(bitmap, key.radius, key.shadowRadius, dx, dy);
+	}
+
+	private static void removeClearedReferences() {
+		Iterator<WeakReference<Bitmap>> iterator = CACHE.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().get() == null) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static Bitmap renderCircleShadow(@NonNull Key key) {
+		// blur extends to ~2 blur radiuses from shape edge
+		int padding = 2 * key.shadowRadius;
+		int size = 2 * (key.radius + padding);
+		Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(key.shadowColor);
+		paint.setMaskFilter(new BlurMaskFilter(key.shadowRadius, BlurMaskFilter.Blur.NORMAL));
+		canvas.drawCircle(size / 2f, size / 2f, key.radius, paint);
+		return bitmap;
+	}
+
+	/**
+	 * Pre-blurred shadow of circle with drawing helpers.
+	 */
+	static final class Shadow {
+
+		private final Bitmap bitmap;
+		private final float padding;
+		private final float dx;
+		private final float dy;
+		private final Paint paint;
+		private final Rect src;
+		private final RectF dst;
+
+		private Shadow(@NonNull Bitmap bitmap, int radius, int shadowRadius, float dx, float dy) {
+			this.bitmap = bitmap;
+			this.padding = radius + 2 * shadowRadius;
+			this.dx = dx;
+			this.dy = dy;
+			this.paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+			this.src = new Rect();
+			this.dst = new RectF();
+		}
+
+		/**
+		 * Draw shadow of circle.
+		 * @param canvas canvas
+		 * @param cx x coordinate of circle center
+		 * @param cy y coordinate of circle center
+		 * @param alpha alpha of shadow
+		 */
+		void drawCircle(@NonNull Canvas canvas, float cx, float cy, int alpha) {
+			paint.setAlpha(alpha);
+			canvas.drawBitmap(bitmap, cx - padding + dx, cy - padding + dy, paint);
+		}
+
+		/**
+		 * Draw shadow of pill (rounded rect with corner radius equal to half of its height).
+		 * @param canvas canvas
+		 * @param bounds bounds of pill
+		 * @param alpha alpha of shadow
+		 * @return number of issued bitmap draws
+		 */
+		int drawPill(@NonNull Canvas canvas, @NonNull RectF bounds, int alpha) {
+			paint.setAlpha(alpha);
+			int size = bitmap.getWidth();
+			int half = size / 2;
+			float halfHeight = bounds.height() / 2;
+			float top = bounds.centerY() - padding + dy;
+			float bottom = top + size;
+			float left = bounds.left + halfHeight - padding + dx;
+			float right = bounds.right - halfHeight + padding + dx;
+			// left cap
+			src.set(0, 0, half, size);
+			dst.set(left, top, left + half, bottom);
+			canvas.drawBitmap(bitmap, src, dst, paint);
+			// stretched middle column
+			src.set(half, 0, half + 1, size);
+			dst.set(left + half, top, right - half, bottom);
+			int draws = 2;
+			if (dst.width() > 0) {
+				canvas.drawBitmap(bitmap, src, dst, paint);
+				draws++;
+			}
+			// right cap
+			src.set(size - half, 0, size, size);
+			dst.set(right - half, top, right, bottom);
+			canvas.drawBitmap(bitmap, src, dst, paint);
+			return draws;
+		}
+	}
+
+	private static final class Key {
+
+		private final int radius;
+		private final int shadowRadius;
+		private final int shadowColor;
+
+		Key(int radius, int shadowRadius, int shadowColor) {
+			this.radius = radius;
+			this.shadowRadius = shadowRadius;
+			this.shadowColor = shadowColor;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return radius == key.radius && shadowRadius == key.shadowRadius && shadowColor == key.shadowColor;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = radius;
+			result = 31 * result + shadowRadius;
+			result = 31 * result + shadowColor;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.cleveroad.audiowidget;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timings of widget construction and showing. Enabled with
+ * {@link AudioWidget.Builder#startupTracing(boolean)}.
+ * <p>
+ * Phases are measured exclusively: if one phase starts while another one is running,
+ * time spent in the inner phase is not counted for the outer one.
+ */
+public class StartupTrace {
+
+    private static final int MAX_DEPTH = 8;
+
+    /**
+     * Traced phase.
+     */
+    public enum Phase {
+        /**
+         * Measuring screen, status bar and navigation bar.
+         */
+        SCREEN_METRICS,
+        /**
+         * Resolving colors and dimensions from resources.
+         */
+        RESOLVE_RESOURCES,
+        /**
+         * Loading default drawables from resources.
+         */
+        RESOLVE_DRAWABLES,
+        /**
+         * Creating mutable copies of drawables by widget views.
+         */
+        MUTATE_DRAWABLES,
+        /**
+         * Creating widget views (paints, animators, etc).
+         */
+        CREATE_VIEWS,
+        /**
+         * Creating touch managers and bounds checkers.
+         */
+        SETUP_TOUCH_MANAGERS,
+        /**
+         * Adding views to window manager in {@link AudioWidget#show(int, int)}.
+         */
+        ADD_VIEWS
+    }
+
+    private final long[] durations;
+    private final Phase[] stack;
+    private int depth;
+    private long phaseStart;
+
+    StartupTrace() {
+        durations = new long[Phase.values().length];
+        stack = new Phase[MAX_DEPTH];
+    }
+
+    /**
+     * Start new phase. Previous phase (if any) will be paused until {@link #end()} called.
+     * @param phase phase to start
+     */
+    void begin(@NonNull Phase phase) {
+        long now = System.nanoTime();
+        if (depth > 0) {
+            Phase current = stack[depth - 1];
+            durations[current.ordinal()] += now - phaseStart;
+        }
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Too many nested phases.");
+        }
+        stack[depth++] = phase;
+        phaseStart = now;
+    }
+
+    /**
+     * End current phase and resume previous one.
+     */
+    void end() {
+        if (depth == 0) {
+            throw new IllegalStateException("No phase started.");
+        }
+        long now = System.nanoTime();
+        Phase current = stack[--depth];
+        stack[depth] = null;
+        durations[current.ordinal()] += now - phaseStart;
+        phaseStart = now;
+    }
+
+    /**
+     * Get duration of phase.
+     * @param phase phase
+     * @param unit time unit of result
+     * @return duration of phase in specified units
+     */
+    public long duration(@NonNull Phase phase, @NonNull TimeUnit unit) {
+        return unit.convert(durations[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get total duration of all phases.
+     * @param unit time unit of result
+     * @return total duration in specified units
+     */
+    public long totalDuration(@NonNull TimeUnit unit) {
+        long total = 0;
+        for (long duration : durations) {
+            total += duration;
+        }
+        return unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StartupTrace{");
+        for (Phase phase : Phase.values()) {
+            builder.append(phase.name())
+                    .append('=')
+                    .append(duration(phase, TimeUnit.MICROSECONDS))
+                    .append("us, ");
+        }
+        return builder.append("total=")
+                .append(totalDuration(TimeUnit.MICROSECONDS))
+                .append("us}")
+                .toString();
+    }
+}
@@ -1,12 +1,10 @@
 package com.cleveroad.audiowidget;
 
 import android.animation.Animator;
-import android.animation.FloatEvaluator;
-import android.animation.IntEvaluator;
-import android.animation.PropertyValuesHolder;
 import android.animation.ValueAnimator;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
@@ -31,7 +29,14 @@ class TouchManager implements View.OnTouchListener {
     private Callback callback;
     private int screenWidth;
     private int screenHeight;
-    private Float lastRawX, lastRawY;
+    private float lastRawX, lastRawY;
+    private boolean hasLastRawPosition;
+    @Nullable
+    private FrameTracker frameTracker;
+    private boolean dragging;
+    @Nullable
+    private GestureRecorder gestureRecorder;
+    private int gestureTarget;
 
     public TouchManager(@NonNull View view, @NonNull BoundsChecker boundsChecker) {
         this.gestureDetector = new GestureDetector(view.getContext(), gestureListener = new GestureListener());
@@ -57,16 +62,77 @@ class TouchManager implements View.OnTouchListener {
         return this;
     }
 
+    /**
+     * Update screen size after display change. Shown view keeps its screen edge and relative
+     * vertical position and is moved into new bounds without animation.
+     * @param screenWidth new screen width
+     * @param screenHeight new screen height
+     */
+    void updateScreenSize(int screenWidth, int screenHeight) {
+        int oldWidth = this.screenWidth;
+        int oldHeight = this.screenHeight;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        WindowManager.LayoutParams params = (WindowManager.LayoutParams) view.getLayoutParams();
+        if (params == null || view.getParent() == null)
+            return;
+        // cancelled fling starts sticky edge animation, so cancel it first
+        velocityAnimator.cancel();
+        stickyEdgeAnimator.cancel();
+        float cx = params.x + view.getWidth() / 2f;
+        float cy = params.y + view.getHeight() / 2f;
+        if (cx < oldWidth / 2f) {
+            params.x = (int) boundsChecker.stickyLeftSide(screenWidth);
+        } else {
+            params.x = (int) boundsChecker.stickyRightSide(screenWidth);
+        }
+        int top = (int) boundsChecker.stickyTopSide(screenHeight);
+        int bottom = (int) boundsChecker.stickyBottomSide(screenHeight);
+        int y = (int) (cy / oldHeight * screenHeight - view.getHeight() / 2f);
+        params.y = Math.max(top, Math.min(bottom, y));
+        windowManager.updateViewLayout(view, params);
+    }
+
     public TouchManager callback(Callback callback) {
         this.callback = callback;
         return this;
     }
 
+    /**
+     * Record touch events received by view.
+     * @param gestureRecorder recorder or null to stop recording
+     * @param target target id of view written with events
+     * @return this touch manager
+     */
+    TouchManager gestureRecorder(@Nullable GestureRecorder gestureRecorder, int target) {
+        this.gestureRecorder = gestureRecorder;
+        this.gestureTarget = target;
+        return this;
+    }
+
+    /**
+     * Collect frame timings of dragging, fling and sticky edge animations.
+     * @param frameTracker frame tracker
+     * @return this touch manager
+     */
+    TouchManager frameTracker(@NonNull FrameTracker frameTracker) {
+        this.frameTracker = frameTracker;
+        velocityAnimator.velocityAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.DRAG));
+        stickyEdgeAnimator.edgeAnimator.addListener(frameTracker.listener(WidgetMetrics.Animation.DRAG));
+        return this;
+    }
+
     @Override
     public boolean onTouch(@NonNull View v, @NonNull MotionEvent event) {
+        if (gestureRecorder != null) {
+            gestureRecorder.record(gestureTarget, event);
+        }
         boolean res = gestureDetector.onTouchEvent(event);
         if (event.getAction() == MotionEvent.ACTION_UP) {
             gestureListener.onUpEvent(event);
+        } else if (event.getAction() == MotionEvent.ACTION_CANCEL) {
+            // cancelled gesture must end too, otherwise widget stays touched and dragged
+            gestureListener.onCancelEvent(event);
         } else if (event.getAction() == MotionEvent.ACTION_MOVE) {
             gestureListener.onMove(event);
         } else if (event.getAction() == MotionEvent.ACTION_OUTSIDE) {
@@ -120,6 +186,14 @@ class TouchManager implements View.OnTouchListener {
          */
         void onReleased(float x, float y);
 
+        /**
+         * Called when system cancelled touch gesture. Unlike {@link #onReleased(float, float)}
+         * it doesn't mean user released finger, so gesture must not take any action.
+         * @param x x coordinate
+         * @param y y coordinate
+         */
+        void onTouchCancelled(float x, float y);
+
         /**
          * Called when sticky edge animation completed.
          */
@@ -158,6 +232,11 @@ class TouchManager implements View.OnTouchListener {
 
         }
 
+        @Override
+        public void onTouchCancelled(float x, float y) {
+
+        }
+
         @Override
         public void onAnimationCompleted() {
 
@@ -243,6 +322,10 @@ class TouchManager implements View.OnTouchListener {
             if (callback != null) {
                 callback.onMoved(distanceX, distanceY);
             }
+            if (!dragging && frameTracker != null) {
+                dragging = true;
+                frameTracker.begin(WidgetMetrics.Animation.DRAG);
+            }
             return true;
         }
 
@@ -261,7 +344,7 @@ class TouchManager implements View.OnTouchListener {
         }
 
         private void onMove(MotionEvent e2) {
-            if (lastRawX != null && lastRawY != null) {
+            if (hasLastRawPosition) {
                 long diff = e2.getEventTime() - lastEventTime;
                 float dt = diff == 0 ? 0 : 1000f / diff;
                 float newVelX = (e2.getRawX() - lastRawX) * dt;
@@ -271,6 +354,7 @@ class TouchManager implements View.OnTouchListener {
             }
             lastRawX = e2.getRawX();
             lastRawY = e2.getRawY();
+            hasLastRawPosition = true;
             lastEventTime = e2.getEventTime();
         }
 
@@ -278,8 +362,22 @@ class TouchManager implements View.OnTouchListener {
             if (callback != null) {
                 callback.onReleased(e.getX(), e.getY());
             }
-            lastRawX = null;
-            lastRawY = null;
+            endGesture();
+        }
+
+        private void onCancelEvent(MotionEvent e) {
+            if (callback != null) {
+                callback.onTouchCancelled(e.getX(), e.getY());
+            }
+            endGesture();
+        }
+
+        private void endGesture() {
+            hasLastRawPosition = false;
+            if (dragging) {
+                dragging = false;
+                frameTracker.end(WidgetMetrics.Animation.DRAG);
+            }
             lastEventTime = 0;
             velX = velY = 0;
             if (!velocityAnimator.isAnimating()) {
@@ -299,26 +397,22 @@ class TouchManager implements View.OnTouchListener {
      */
     private class VelocityAnimator {
         private final ValueAnimator velocityAnimator;
-        private final PropertyValuesHolder dxHolder;
-        private final PropertyValuesHolder dyHolder;
         private final Interpolator interpolator;
         private WindowManager.LayoutParams params;
         private long prevPlayTime;
+        private float velocityX, velocityY;
 
         public VelocityAnimator() {
             interpolator = new DecelerateInterpolator();
-            dxHolder = PropertyValuesHolder.ofFloat("dx", 0, 0);
-            dyHolder = PropertyValuesHolder.ofFloat("dy", 0, 0);
-            dxHolder.setEvaluator(new FloatEvaluator());
-            dyHolder.setEvaluator(new FloatEvaluator());
-            velocityAnimator = ValueAnimator.ofPropertyValuesHolder(dxHolder, dyHolder);
+            velocityAnimator = ValueAnimator.ofFloat(0, 1);
             velocityAnimator.setInterpolator(interpolator);
             velocityAnimator.setDuration(400);
             velocityAnimator.addUpdateListener(animation -> {
                 long curPlayTime = animation.getCurrentPlayTime();
                 long dt = curPlayTime - prevPlayTime;
-                float dx = (float) animation.getAnimatedValue("dx") * dt / 1000f;
-                float dy = (float) animation.getAnimatedValue("dy") * dt / 1000f;
+                float remaining = 1 - animation.getAnimatedFraction();
+                float dx = velocityX * remaining * dt / 1000f;
+                float dy = velocityY * remaining * dt / 1000f;
                 prevPlayTime = curPlayTime;
                 params.x += dx;
                 params.y += dy;
@@ -353,38 +447,38 @@ class TouchManager implements View.OnTouchListener {
             if (isAnimating())
                 return;
             params = (WindowManager.LayoutParams) view.getLayoutParams();
-            dxHolder.setFloatValues(velocityX, 0);
-            dyHolder.setFloatValues(velocityY, 0);
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
             velocityAnimator.start();
         }
 
         public boolean isAnimating() {
             return velocityAnimator.isRunning();
         }
+
+        public void cancel() {
+            velocityAnimator.cancel();
+        }
     }
 
     /**
      * Helper class for animating sticking to screen edge.
      */
     private class StickyEdgeAnimator {
-        private final PropertyValuesHolder dxHolder;
-        private final PropertyValuesHolder dyHolder;
         private final ValueAnimator edgeAnimator;
         private final Interpolator interpolator;
         private WindowManager.LayoutParams params;
+        private int startX, startY, endX, endY;
 
         public StickyEdgeAnimator() {
             interpolator = new OvershootInterpolator();
-            dxHolder = PropertyValuesHolder.ofInt("x", 0, 0);
-            dyHolder = PropertyValuesHolder.ofInt("y", 0, 0);
-            dxHolder.setEvaluator(new IntEvaluator());
-            dyHolder.setEvaluator(new IntEvaluator());
-            edgeAnimator = ValueAnimator.ofPropertyValuesHolder(dxHolder, dyHolder);
+            edgeAnimator = ValueAnimator.ofFloat(0, 1);
             edgeAnimator.setInterpolator(interpolator);
             edgeAnimator.setDuration(400);
             edgeAnimator.addUpdateListener(animation -> {
-                int x = (int) animation.getAnimatedValue("x");
-                int y = (int) animation.getAnimatedValue("y");
+                float fraction = animation.getAnimatedFraction();
+                int x = (int) (startX + (endX - startX) * fraction);
+                int y = (int) (startY + (endY - startY) * fraction);
                 if (callback != null) {
                     callback.onMoved(x - params.x, y - params.y);
                 }
@@ -429,14 +523,20 @@ class TouchManager implements View.OnTouchListener {
                     y = bottom;
                 }
             }
-            dxHolder.setIntValues(params.x, x);
-            dyHolder.setIntValues(params.y, y);
+            startX = params.x;
+            startY = params.y;
+            endX = x;
+            endY = y;
             edgeAnimator.start();
         }
 
         public boolean isAnimating() {
             return edgeAnimator.isRunning();
         }
+
+        public void cancel() {
+            edgeAnimator.cancel();
+        }
     }
 
     void animateToBounds(BoundsChecker boundsChecker) {
@@ -0,0 +1,70 @@
+package com.cleveroad.audiowidget;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+/**
+ * Factory for several audio widgets with the same settings.
+ * <p>
+ * Configuration values, decoded drawables, screen metrics, random generator, interpolators and
+ * handler are resolved once and shared between all widgets created by manager. Each widget
+ * only gets its own views, playback state and mutable copies of drawables. All widgets' animators
+ * run on the main thread and are driven by the same frame callback.
+ * <p>
+ * Manager must be created and used on the main thread.
+ */
+public class WidgetManager {
+
+    private final AudioWidget.Builder builder;
+    private final Handler handler;
+    private final AudioWidget.PreparedResources resources;
+    private boolean resourcesUsed;
+    private int widgetsCount;
+
+    /**
+     * Create new widget manager. If builder was prewarmed with {@link AudioWidget#prewarm(Context, AudioWidget.Builder)},
+     * prepared resources will be used. Builder must not be changed after this call.
+     *
+     * @param context instance of context
+     * @param builder settings for all widgets
+     * @throws IllegalStateException if size parameters have wrong values (less than zero).
+     */
+    public WidgetManager(@NonNull Context context, @NonNull AudioWidget.Builder builder) {
+        builder.checkValues();
+        this.builder = builder;
+        this.handler = new Handler();
+        AudioWidget.PreparedResources resources = builder.takePrewarmed();
+        if (resources == null) {
+            resources = AudioWidget.PreparedResources.prepare(context.getApplicationContext(), builder, null);
+        }
+        this.resources = resources;
+    }
+
+    /**
+     * Create new audio widget that shares resources with other widgets of this manager.
+     *
+     * @return new audio widget
+     */
+    @NonNull
+    public AudioWidget newWidget() {
+        AudioWidget.PreparedResources widgetResources;
+        if (resourcesUsed) {
+            widgetResources = resources.forNewWidget();
+        } else {
+            widgetResources = resources;
+            resourcesUsed = true;
+        }
+        widgetsCount++;
+        return new AudioWidget(builder, widgetResources, handler);
+    }
+
+    /**
+     * Get number of widgets created by this manager.
+     *
+     * @return number of widgets
+     */
+    public int widgetsCount() {
+        return widgetsCount;
+    }
+}
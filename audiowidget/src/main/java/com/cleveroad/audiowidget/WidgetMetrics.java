@@ -0,0 +1,230 @@
+package com.cleveroad.audiowidget;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of frame timings, draw timings and draw calls of widget animations. Enabled with
+ * {@link AudioWidget.Builder#frameMetrics(boolean)}.
+ * <p>
+ * Frame is late if it was delivered later than expected by display refresh rate. Number of
+ * frames dropped before late frame is estimated from frame interval.
+ */
+public class WidgetMetrics {
+
+    /**
+     * Tracked animation.
+     */
+    public enum Animation {
+        /**
+         * Bubbles, touch and progress animations of collapsed button.
+         */
+        COLLAPSED_BUTTON,
+        /**
+         * Expand transition.
+         */
+        EXPAND,
+        /**
+         * Collapse transition.
+         */
+        COLLAPSE,
+        /**
+         * Touch and bubbles animations of expanded widget.
+         */
+        EXPANDED_WIDGET,
+        /**
+         * Dragging, fling, sticking to screen edge and remove widget animations.
+         */
+        DRAG
+    }
+
+    /**
+     * Type of draw call made by widget views.
+     */
+    public enum DrawCall {
+        CIRCLE,
+        ARC,
+        ROUND_RECT,
+        LINE,
+        /**
+         * Drawing of bitmap outside of drawables: pre-blurred shadow bitmap (or its slice).
+         */
+        SHADOW,
+        /**
+         * Drawing of icon or album cover drawable.
+         */
+        DRAWABLE
+    }
+
+    private final AnimationMetrics[] metrics;
+    private final long frameIntervalNanos;
+
+    WidgetMetrics(@NonNull AnimationMetrics[] metrics, long frameIntervalNanos) {
+        this.metrics = metrics;
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * Get metrics of animation.
+     * @param animation animation
+     * @return metrics of animation
+     */
+    @NonNull
+    public AnimationMetrics metrics(@NonNull Animation animation) {
+        return metrics[animation.ordinal()];
+    }
+
+    /**
+     * Get expected interval between frames.
+     * @param unit time unit of result
+     * @return frame interval in specified units
+     */
+    public long frameInterval(@NonNull TimeUnit unit) {
+        return unit.convert(frameIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WidgetMetrics{frameInterval=")
+                .append(frameInterval(TimeUnit.MICROSECONDS))
+                .append("us");
+        for (Animation animation : Animation.values()) {
+            builder.append(", ")
+                    .append(animation.name())
+                    .append('=')
+                    .append(metrics(animation));
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Frame and draw timings of single animation.
+     */
+    public static class AnimationMetrics {
+
+        private final int frames;
+        private final int lateFrames;
+        private final int droppedFrames;
+        private final int longestDroppedStreak;
+        private final int draws;
+        private final long drawTimeNanos;
+        private final long maxDrawTimeNanos;
+        private final int[] drawCalls;
+        private final long rasterArea;
+
+        AnimationMetrics(int frames, int lateFrames, int droppedFrames, int longestDroppedStreak,
+                         int draws, long drawTimeNanos, long maxDrawTimeNanos,
+                         @NonNull int[] drawCalls, long rasterArea) {
+            this.frames = frames;
+            this.lateFrames = lateFrames;
+            this.droppedFrames = droppedFrames;
+            this.longestDroppedStreak = longestDroppedStreak;
+            this.draws = draws;
+            this.drawTimeNanos = drawTimeNanos;
+            this.maxDrawTimeNanos = maxDrawTimeNanos;
+            this.drawCalls = drawCalls;
+            this.rasterArea = rasterArea;
+        }
+
+        /**
+         * Get number of frames rendered while animation was running.
+         * @return number of frames
+         */
+        public int frames() {
+            return frames;
+        }
+
+        /**
+         * Get number of frames delivered later than expected.
+         * @return number of late frames
+         */
+        public int lateFrames() {
+            return lateFrames;
+        }
+
+        /**
+         * Get estimated number of dropped frames.
+         * @return number of dropped frames
+         */
+        public int droppedFrames() {
+            return droppedFrames;
+        }
+
+        /**
+         * Get maximum number of frames dropped in a row (across consecutive late frames).
+         * @return longest dropped frames streak
+         */
+        public int longestDroppedStreak() {
+            return longestDroppedStreak;
+        }
+
+        /**
+         * Get number of widget views' draws while animation was running.
+         * @return number of draws
+         */
+        public int draws() {
+            return draws;
+        }
+
+        /**
+         * Get total duration of draws.
+         * @param unit time unit of result
+         * @return total duration of draws in specified units
+         */
+        public long drawDuration(@NonNull TimeUnit unit) {
+            return unit.convert(drawTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get duration of the longest draw.
+         * @param unit time unit of result
+         * @return duration of the longest draw in specified units
+         */
+        public long maxDrawDuration(@NonNull TimeUnit unit) {
+            return unit.convert(maxDrawTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get number of draw calls of specified type made by widget views.
+         * @param drawCall type of draw call
+         * @return number of draw calls
+         */
+        public int drawCalls(@NonNull DrawCall drawCall) {
+            return drawCalls[drawCall.ordinal()];
+        }
+
+        /**
+         * Get total number of draw calls made by widget views.
+         * @return number of draw calls
+         */
+        public int totalDrawCalls() {
+            int total = 0;
+            for (int calls : drawCalls) {
+                total += calls;
+            }
+            return total;
+        }
+
+        /**
+         * Get total area redrawn by widget views (sum of draws' clip areas).
+         * @return area in pixels
+         */
+        public long rasterArea() {
+            return rasterArea;
+        }
+
+        @Override
+        public String toString() {
+            return "{frames=" + frames +
+                    ", lateFrames=" + lateFrames +
+                    ", droppedFrames=" + droppedFrames +
+                    ", longestDroppedStreak=" + longestDroppedStreak +
+                    ", draws=" + draws +
+                    ", drawTime=" + drawDuration(TimeUnit.MICROSECONDS) + "us" +
+                    ", maxDrawTime=" + maxDrawDuration(TimeUnit.MICROSECONDS) + "us" +
+                    ", drawCalls=" + totalDrawCalls() +
+                    ", rasterArea=" + rasterArea + "}";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.cleveroad.audiowidget;
+
+import android.animation.ValueAnimator;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation budgets of widget's hot paths: draws of real views, touch events dispatched to
+ * views through their touch managers and update ticks of real animators. Widget is shown with
+ * {@link TestWindowManager}, views draw on {@link NoOpCanvas}, so only widget code and framework
+ * code it calls are measured.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AllocationBudgetTest {
+
+    private static final int WARM_UP_CALLS = 20000;
+    private static final int MEASURED_CALLS = 20000;
+
+    /**
+     * Enough for show, expand and sticky edge animations to finish.
+     */
+    private static final long SETTLE_TIME = 2000;
+
+    /**
+     * Budgets of hot paths in bytes per call.
+     */
+    private static final long PLAY_PAUSE_BUTTON_DRAW_BUDGET = 0;
+    private static final long EXPAND_COLLAPSE_WIDGET_DRAW_BUDGET = 0;
+    private static final long REMOVE_WIDGET_DRAW_BUDGET = 0;
+    private static final long ANIMATION_FRAME_BUDGET = 0;
+    private static final long TOUCH_EVENT_BUDGET = 0;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private TestWindowManager windowManager;
+    private AudioWidget audioWidget;
+    private PlayPauseButton playPauseButton;
+    private long playTime;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        windowManager = new TestWindowManager();
+        audioWidget = new AudioWidget.Builder(windowManager.context()).build();
+        audioWidget.show(0, 0);
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+        playPauseButton = windowManager.find(PlayPauseButton.class);
+        assertNotNull(playPauseButton);
+    }
+
+    @After
+    public void tearDown() {
+        audioWidget.hide();
+    }
+
+    @Test
+    public void playPauseButtonDraw() {
+        NoOpCanvas canvas = canvasOf(playPauseButton);
+        assertBudget("PlayPauseButton draw", PLAY_PAUSE_BUTTON_DRAW_BUDGET, () -> playPauseButton.onDraw(canvas));
+    }
+
+    @Test
+    public void expandCollapseWidgetDraw() {
+        ExpandCollapseWidget widget = expandWidget();
+        NoOpCanvas canvas = canvasOf(widget);
+        assertBudget("ExpandCollapseWidget draw", EXPAND_COLLAPSE_WIDGET_DRAW_BUDGET, () -> widget.onDraw(canvas));
+    }
+
+    @Test
+    public void removeWidgetDraw() {
+        RemoveWidgetView removeWidgetView = windowManager.find(RemoveWidgetView.class);
+        assertNotNull(removeWidgetView);
+        NoOpCanvas canvas = canvasOf(removeWidgetView);
+        assertBudget("RemoveWidgetView draw", REMOVE_WIDGET_DRAW_BUDGET, () -> removeWidgetView.onDraw(canvas));
+    }
+
+    @Test
+    public void buttonBubblesFrame() {
+        ValueAnimator animator = field(playPauseButton, "bubblesAnimator");
+        NoOpCanvas canvas = canvasOf(playPauseButton);
+        playPauseButton.onClick();
+        assertTrue(playPauseButton.isAnimationInProgress());
+        assertBudget("PlayPauseButton bubbles frame", ANIMATION_FRAME_BUDGET, () -> {
+            tick(animator);
+            playPauseButton.onDraw(canvas);
+        });
+    }
+
+    @Test
+    public void expandFrame() {
+        ExpandCollapseWidget widget = expandWidget();
+        ValueAnimator animator = field(widget, "expandAnimator");
+        NoOpCanvas canvas = canvasOf(widget);
+        assertBudget("ExpandCollapseWidget expand frame", ANIMATION_FRAME_BUDGET, () -> {
+            tick(animator);
+            widget.onDraw(canvas);
+        });
+    }
+
+    @Test
+    public void stickyEdgeFrame() {
+        TouchManager touchManager = field(audioWidget, "playPauseButtonManager");
+        ValueAnimator animator = field(field(touchManager, "stickyEdgeAnimator"), "edgeAnimator");
+        assertBudget("TouchManager sticky edge frame", ANIMATION_FRAME_BUDGET, () -> tick(animator));
+    }
+
+    @Test
+    public void touchMove() {
+        float x = playPauseButton.getWidth() / 2f;
+        float y = playPauseButton.getHeight() / 2f;
+        long downTime = SystemClock.uptimeMillis();
+        dispatch(MotionEvent.ACTION_DOWN, downTime, x, y);
+        // leave touch slop, so moves drag the button
+        dispatch(MotionEvent.ACTION_MOVE, downTime, x + x, y);
+        // window follows finger, so view-local position of finger changes on every move
+        MotionEvent left = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, x - 10, y, 0);
+        MotionEvent right = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, x + 10, y, 0);
+        try {
+            assertBudget("TouchManager move", TOUCH_EVENT_BUDGET, () -> {
+                playPauseButton.dispatchTouchEvent(left);
+                playPauseButton.dispatchTouchEvent(right);
+            });
+        } finally {
+            left.recycle();
+            right.recycle();
+        }
+        dispatch(MotionEvent.ACTION_UP, downTime, x, y);
+    }
+
+    private ExpandCollapseWidget expandWidget() {
+        audioWidget.expand();
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+        ExpandCollapseWidget widget = windowManager.find(ExpandCollapseWidget.class);
+        assertNotNull(widget);
+        return widget;
+    }
+
+    private void dispatch(int action, long downTime, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, x, y, 0);
+        try {
+            playPauseButton.dispatchTouchEvent(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    /**
+     * Move animator to its next frame, wrapping around its duration.
+     */
+    private void tick(ValueAnimator animator) {
+        playTime += 16;
+        if (playTime >= animator.getDuration()) {
+            playTime = 0;
+        }
+        animator.setCurrentPlayTime(playTime);
+    }
+
+    private static NoOpCanvas canvasOf(View view) {
+        return new NoOpCanvas(view.getWidth(), view.getHeight());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T field(Object owner, String name) {
+        try {
+            Field field = owner.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return (T) field.get(owner);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("No field " + name + " in " + owner.getClass(), e);
+        }
+    }
+
+    private void assertBudget(String path, long budget, Runnable hotPath) {
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            hotPath.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        // measuring itself may allocate, so its cost is subtracted
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - start;
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            hotPath.run();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - start - overhead;
+        // allocation of any object takes at least 16 bytes, so smaller excess is measurement noise
+        long perCall = allocated / MEASURED_CALLS;
+        assertTrue(path + " allocated " + perCall + " bytes per call, budget is " + budget + ".", perCall <= budget);
+    }
+}
@@ -0,0 +1,186 @@
+package com.cleveroad.audiowidget;
+
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Draw calls and raster areas collected from real widget views for each tracked animation.
+ * Animations are marked as running directly on tracker, so each phase contains exactly the draws
+ * made by test.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameTrackerTest {
+
+    /**
+     * Enough for show and expand animations to finish.
+     */
+    private static final long SETTLE_TIME = 2000;
+    private static final int BUTTON_BUBBLES_COUNT = 20;
+    private static final int WIDGET_BUBBLES_COUNT = 30;
+    private static final int WIDGET_BUTTONS_COUNT = 5;
+
+    private AudioWidget audioWidget;
+    private FrameTracker frameTracker;
+    private PlayPauseButton playPauseButton;
+    private ExpandCollapseWidget expandCollapseWidget;
+    private RemoveWidgetView removeWidgetView;
+
+    @Before
+    public void setUp() {
+        TestWindowManager windowManager = new TestWindowManager();
+        audioWidget = new AudioWidget.Builder(windowManager.context())
+                .frameMetrics(true)
+                .build();
+        audioWidget.show(0, 0);
+        audioWidget.expand();
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+        frameTracker = field(audioWidget, "frameTracker");
+        playPauseButton = windowManager.find(PlayPauseButton.class);
+        expandCollapseWidget = windowManager.find(ExpandCollapseWidget.class);
+        removeWidgetView = windowManager.find(RemoveWidgetView.class);
+        assertNotNull(frameTracker);
+        assertNotNull(playPauseButton);
+        assertNotNull(expandCollapseWidget);
+        assertNotNull(removeWidgetView);
+        audioWidget.resetMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        audioWidget.hide();
+    }
+
+    @Test
+    public void drawsAreCountedForRunningAnimations() {
+        frameTracker.begin(WidgetMetrics.Animation.COLLAPSED_BUTTON);
+        draw(playPauseButton);
+        draw(playPauseButton);
+        frameTracker.end(WidgetMetrics.Animation.COLLAPSED_BUTTON);
+
+        frameTracker.begin(WidgetMetrics.Animation.EXPANDED_WIDGET);
+        draw(expandCollapseWidget);
+        frameTracker.end(WidgetMetrics.Animation.EXPANDED_WIDGET);
+
+        // remove widget is drawn while both animations run
+        frameTracker.begin(WidgetMetrics.Animation.EXPAND);
+        frameTracker.begin(WidgetMetrics.Animation.DRAG);
+        draw(removeWidgetView);
+        frameTracker.end(WidgetMetrics.Animation.EXPAND);
+        frameTracker.end(WidgetMetrics.Animation.DRAG);
+
+        // draws without running animations aren't counted
+        draw(playPauseButton);
+        draw(expandCollapseWidget);
+
+        WidgetMetrics metrics = audioWidget.metrics();
+        assertNotNull(metrics);
+
+        int buttonShadows = hasShadow(playPauseButton) ? 1 : 0;
+        WidgetMetrics.AnimationMetrics button = metrics.metrics(WidgetMetrics.Animation.COLLAPSED_BUTTON);
+        assertEquals(2, button.draws());
+        assertEquals(2, button.drawCalls(WidgetMetrics.DrawCall.CIRCLE));
+        assertEquals(2, button.drawCalls(WidgetMetrics.DrawCall.ARC));
+        assertEquals(2 * buttonShadows, button.drawCalls(WidgetMetrics.DrawCall.SHADOW));
+        assertEquals(2, button.drawCalls(WidgetMetrics.DrawCall.DRAWABLE));
+        assertEquals(0, button.drawCalls(WidgetMetrics.DrawCall.ROUND_RECT));
+        assertEquals(0, button.drawCalls(WidgetMetrics.DrawCall.LINE));
+        assertEquals(2 * (3 + buttonShadows), button.totalDrawCalls());
+        assertEquals(2 * area(playPauseButton), button.rasterArea());
+
+        // pill shadow of expanded widget is drawn as two caps and stretched middle
+        int widgetShadows = hasShadow(expandCollapseWidget) ? 3 : 0;
+        WidgetMetrics.AnimationMetrics widget = metrics.metrics(WidgetMetrics.Animation.EXPANDED_WIDGET);
+        assertEquals(1, widget.draws());
+        assertEquals(WIDGET_BUBBLES_COUNT, widget.drawCalls(WidgetMetrics.DrawCall.CIRCLE));
+        assertEquals(1, widget.drawCalls(WidgetMetrics.DrawCall.ROUND_RECT));
+        assertEquals(widgetShadows, widget.drawCalls(WidgetMetrics.DrawCall.SHADOW));
+        assertEquals(WIDGET_BUTTONS_COUNT, widget.drawCalls(WidgetMetrics.DrawCall.DRAWABLE));
+        assertEquals(WIDGET_BUBBLES_COUNT + 1 + widgetShadows + WIDGET_BUTTONS_COUNT, widget.totalDrawCalls());
+        assertEquals(area(expandCollapseWidget), widget.rasterArea());
+
+        for (WidgetMetrics.Animation animation : new WidgetMetrics.Animation[] {WidgetMetrics.Animation.EXPAND, WidgetMetrics.Animation.DRAG}) {
+            WidgetMetrics.AnimationMetrics remove = metrics.metrics(animation);
+            assertEquals(1, remove.draws());
+            assertEquals(1, remove.drawCalls(WidgetMetrics.DrawCall.CIRCLE));
+            assertEquals(2, remove.drawCalls(WidgetMetrics.DrawCall.LINE));
+            assertEquals(3, remove.totalDrawCalls());
+            assertEquals(area(removeWidgetView), remove.rasterArea());
+        }
+
+        WidgetMetrics.AnimationMetrics collapse = metrics.metrics(WidgetMetrics.Animation.COLLAPSE);
+        assertEquals(0, collapse.draws());
+        assertEquals(0, collapse.totalDrawCalls());
+        assertEquals(0, collapse.rasterArea());
+    }
+
+    @Test
+    public void bubblesAreCountedAsCircles() {
+        playPauseButton.onClick();
+        // bubbles animator marks collapsed button animation as running itself
+        draw(playPauseButton);
+        WidgetMetrics.AnimationMetrics button = audioWidget.metrics().metrics(WidgetMetrics.Animation.COLLAPSED_BUTTON);
+        assertEquals(1, button.draws());
+        assertEquals(BUTTON_BUBBLES_COUNT + 1, button.drawCalls(WidgetMetrics.DrawCall.CIRCLE));
+        assertEquals(area(playPauseButton), button.rasterArea());
+    }
+
+    @Test
+    public void hardwareAcceleratedDrawsAreCounted() {
+        NoOpCanvas canvas = new NoOpCanvas(removeWidgetView.getWidth(), removeWidgetView.getHeight()) {
+            @Override
+            public boolean isHardwareAccelerated() {
+                return true;
+            }
+        };
+        frameTracker.begin(WidgetMetrics.Animation.DRAG);
+        removeWidgetView.onDraw(canvas);
+        frameTracker.end(WidgetMetrics.Animation.DRAG);
+        WidgetMetrics.AnimationMetrics drag = audioWidget.metrics().metrics(WidgetMetrics.Animation.DRAG);
+        assertEquals(1, drag.draws());
+        assertEquals(3, drag.totalDrawCalls());
+        assertEquals(area(removeWidgetView), drag.rasterArea());
+    }
+
+    private static void draw(View view) {
+        NoOpCanvas canvas = new NoOpCanvas(view.getWidth(), view.getHeight());
+        if (view instanceof PlayPauseButton) {
+            ((PlayPauseButton) view).onDraw(canvas);
+        } else if (view instanceof ExpandCollapseWidget) {
+            ((ExpandCollapseWidget) view).onDraw(canvas);
+        } else {
+            ((RemoveWidgetView) view).onDraw(canvas);
+        }
+    }
+
+    private static long area(View view) {
+        return (long) view.getWidth() * view.getHeight();
+    }
+
+    private static boolean hasShadow(View view) {
+        return field(view, "shadow") != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T field(Object owner, String name) {
+        try {
+            Field field = owner.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return (T) field.get(owner);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("No field " + name + " in " + owner.getClass(), e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.cleveroad.audiowidget;
+
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays recorded gestures into widget through its real touch path. Robolectric's scheduler
+ * controls the main looper clock, so animations, long press and delayed actions progress only
+ * between replayed events and results don't depend on machine speed.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class GestureReplayTest {
+
+    /**
+     * Enough for any sticky edge, expand and remove widget animation to finish.
+     */
+    private static final long SETTLE_TIME = 2000;
+
+    private TestWindowManager windowManager;
+    private AudioWidget audioWidget;
+    private final Point screenSize = new Point();
+    private final List<AudioWidget.State> states = new ArrayList<>();
+    private int playPauseClicks;
+
+    @Before
+    public void setUp() {
+        showWidget();
+    }
+
+    @Test
+    public void tapClicksPlayPauseButton() throws IOException {
+        Point start = buttonPosition();
+        replay("tap.gesture");
+        assertEquals(1, playPauseClicks);
+        assertEquals(start, buttonPosition());
+        assertTrue(states.isEmpty());
+    }
+
+    @Test
+    public void dragAcrossScreenSticksToOppositeEdge() throws IOException {
+        assertTrue(buttonCenterX() > screenSize.x / 2);
+        replay("drag_release.gesture");
+        assertTrue(audioWidget.isShown());
+        assertTrue(buttonCenterX() < screenSize.x / 2);
+        assertTrue(states.isEmpty());
+    }
+
+    @Test
+    public void sameGestureEndsAtSamePosition() throws IOException {
+        replay("drag_release.gesture");
+        Point first = buttonPosition();
+        audioWidget.hide();
+        showWidget();
+        replay("drag_release.gesture");
+        assertEquals(first, buttonPosition());
+    }
+
+    @Test
+    public void longPressExpandsWidget() throws IOException {
+        replay("long_press.gesture");
+        assertEquals(1, states.size());
+        assertEquals(AudioWidget.State.EXPANDED, states.get(0));
+        assertNotNull(windowManager.find(ExpandCollapseWidget.class));
+        assertEquals(0, playPauseClicks);
+    }
+
+    @Test
+    public void releaseOverRemoveWidgetRemovesWidget() {
+        dragOverRemoveWidget();
+        touch(MotionEvent.ACTION_UP);
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+        assertFalse(audioWidget.isShown());
+        assertTrue(states.contains(AudioWidget.State.REMOVED));
+    }
+
+    @Test
+    public void cancelOverRemoveWidgetKeepsWidget() {
+        dragOverRemoveWidget();
+        touch(MotionEvent.ACTION_CANCEL);
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+        assertTrue(audioWidget.isShown());
+        assertFalse(states.contains(AudioWidget.State.REMOVED));
+    }
+
+    private void showWidget() {
+        windowManager = new TestWindowManager();
+        windowManager.getDefaultDisplay().getSize(screenSize);
+        states.clear();
+        playPauseClicks = 0;
+        audioWidget = new AudioWidget.Builder(windowManager.context()).build();
+        audioWidget.controller().onWidgetStateChangedListener(new AudioWidget.OnWidgetStateChangedListener() {
+            @Override
+            public void onWidgetStateChanged(@NonNull AudioWidget.State state) {
+                states.add(state);
+            }
+
+            @Override
+            public void onWidgetPositionChanged(int cx, int cy) {
+
+            }
+        });
+        audioWidget.controller().onControlsClickListener(new AudioWidget.OnControlsClickListener() {
+            @Override
+            public boolean onPlaylistClicked() {
+                return false;
+            }
+
+            @Override
+            public void onPreviousClicked() {
+
+            }
+
+            @Override
+            public boolean onPlayPauseClicked() {
+                playPauseClicks++;
+                return false;
+            }
+
+            @Override
+            public void onNextClicked() {
+
+            }
+
+            @Override
+            public void onAlbumClicked() {
+
+            }
+        });
+        // shown at the right edge
+        audioWidget.show(screenSize.x, screenSize.y / 2);
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+    }
+
+    /**
+     * Replay gesture file dispatching each event at its recorded time, then let widget settle.
+     */
+    private void replay(String gesture) throws IOException {
+        GestureReplayer replayer;
+        try (InputStream inputStream = getClass().getResourceAsStream("gestures/" + gesture)) {
+            replayer = GestureReplayer.read(inputStream);
+        }
+        long baseTime = SystemClock.uptimeMillis();
+        while (replayer.hasNext()) {
+            long delay = baseTime + replayer.nextEventOffset() - SystemClock.uptimeMillis();
+            if (delay > 0) {
+                ShadowLooper.idleMainLooper(delay);
+            }
+            replayer.dispatchNext(audioWidget, baseTime);
+        }
+        ShadowLooper.idleMainLooper(SETTLE_TIME);
+    }
+
+    // live gesture that needs position of remove widget on current screen
+
+    private long downTime;
+    private float rawX, rawY;
+    private float localOffset;
+
+    /**
+     * Drag button and hold it over remove widget without releasing finger.
+     */
+    private void dragOverRemoveWidget() {
+        View button = windowManager.find(PlayPauseButton.class);
+        downTime = SystemClock.uptimeMillis();
+        rawX = screenSize.x - button.getWidth() / 2f;
+        rawY = screenSize.y / 2f;
+        touch(MotionEvent.ACTION_DOWN);
+        // leave touch slop, so gesture becomes dragging
+        moveBy(-button.getWidth(), 0);
+        // remove widget appears while finger holds button
+        ShadowLooper.idleMainLooper(Configuration.LONG_CLICK_THRESHOLD + SETTLE_TIME / 2);
+        View removeWidget = windowManager.find(RemoveWidgetView.class);
+        WindowManager.LayoutParams removeParams = (WindowManager.LayoutParams) removeWidget.getLayoutParams();
+        WindowManager.LayoutParams buttonParams = (WindowManager.LayoutParams) button.getLayoutParams();
+        moveBy(removeParams.x + removeWidget.getWidth() / 2f - buttonParams.x - button.getWidth() / 2f,
+                removeParams.y + removeWidget.getHeight() / 2f - buttonParams.y - button.getHeight() / 2f);
+    }
+
+    private void moveBy(float dx, float dy) {
+        rawX += dx;
+        rawY += dy;
+        // window follows finger, so view-local coordinates only show the last movement
+        localOffset = localOffset == 0 ? 1 : 0;
+        touch(MotionEvent.ACTION_MOVE, dx + localOffset, dy);
+    }
+
+    private void touch(int action) {
+        touch(action, 0, 0);
+    }
+
+    private void touch(int action, float localDx, float localDy) {
+        View button = windowManager.find(PlayPauseButton.class);
+        float x = button.getWidth() / 2f + localDx;
+        float y = button.getHeight() / 2f + localDy;
+        MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, rawX, rawY, 0);
+        event.offsetLocation(x - rawX, y - rawY);
+        try {
+            audioWidget.dispatchGestureEvent(GestureRecorder.TARGET_COLLAPSED, event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    private Point buttonPosition() {
+        WindowManager.LayoutParams params = (WindowManager.LayoutParams) windowManager.find(PlayPauseButton.class).getLayoutParams();
+        return new Point(params.x, params.y);
+    }
+
+    private float buttonCenterX() {
+        View button = windowManager.find(PlayPauseButton.class);
+        return ((WindowManager.LayoutParams) button.getLayoutParams()).x + button.getWidth() / 2f;
+    }
+}
@@ -0,0 +1,205 @@
+package com.cleveroad.audiowidget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Canvas of fixed size that ignores all calls made by widget views and their drawables, so views
+ * can be drawn in tests without Robolectric's recording canvas.
+ */
+class NoOpCanvas extends Canvas {
+
+    private final int width;
+    private final int height;
+
+    NoOpCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawArc(@NonNull RectF oval, float startAngle, float sweepAngle, boolean useCenter, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawRoundRect(@NonNull RectF rect, float rx, float ry, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawBitmap(@NonNull Bitmap bitmap, float left, float top, @Nullable Paint paint) {
+
+    }
+
+    @Override
+    public void drawBitmap(@NonNull Bitmap bitmap, @Nullable Rect src, @NonNull RectF dst, @Nullable Paint paint) {
+
+    }
+
+    @Override
+    public void drawBitmap(@NonNull Bitmap bitmap, @Nullable Rect src, @NonNull Rect dst, @Nullable Paint paint) {
+
+    }
+
+    @Override
+    public void drawBitmap(@NonNull Bitmap bitmap, @NonNull Matrix matrix, @Nullable Paint paint) {
+
+    }
+
+    @Override
+    public void drawPath(@NonNull Path path, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawRect(@NonNull RectF rect, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawRect(@NonNull Rect r, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawOval(@NonNull RectF oval, @NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawPaint(@NonNull Paint paint) {
+
+    }
+
+    @Override
+    public void drawColor(int color) {
+
+    }
+
+    @Override
+    public void drawColor(int color, @NonNull PorterDuff.Mode mode) {
+
+    }
+
+    @Override
+    public int save() {
+        return 1;
+    }
+
+    @Override
+    public int save(int saveFlags) {
+        return 1;
+    }
+
+    @Override
+    public int saveLayerAlpha(@Nullable RectF bounds, int alpha, int saveFlags) {
+        return 1;
+    }
+
+    @Override
+    public void restore() {
+
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+
+    }
+
+    @Override
+    public int getSaveCount() {
+        return 1;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+
+    }
+
+    @Override
+    public void rotate(float degrees) {
+
+    }
+
+    @Override
+    public void concat(@Nullable Matrix matrix) {
+
+    }
+
+    @Override
+    public boolean clipRect(@NonNull RectF rect) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(@NonNull Rect rect) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        return true;
+    }
+
+    @Override
+    public boolean clipPath(@NonNull Path path) {
+        return true;
+    }
+
+    @Override
+    public boolean getClipBounds(@Nullable Rect bounds) {
+        if (bounds != null) {
+            bounds.set(0, 0, width, height);
+        }
+        return true;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+package com.cleveroad.audiowidget;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Display;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+
+import org.robolectric.Robolectric;
+
+/**
+ * Window manager for Robolectric tests. Widget's overlay windows are laid out at their window
+ * positions inside single layout attached to activity, so views are measured, drawn and can
+ * post actions like in real windows.
+ */
+class TestWindowManager implements WindowManager {
+
+    private final Activity activity;
+    private final WindowLayout layout;
+
+    TestWindowManager() {
+        activity = Robolectric.setupActivity(Activity.class);
+        layout = new WindowLayout(activity);
+        activity.setContentView(layout);
+    }
+
+    /**
+     * Get context that gives this window manager to widget.
+     * @return application-like context
+     */
+    @NonNull
+    Context context() {
+        return new ContextWrapper(activity.getApplicationContext()) {
+
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public Object getSystemService(String name) {
+                if (WINDOW_SERVICE.equals(name)) {
+                    return TestWindowManager.this;
+                }
+                return super.getSystemService(name);
+            }
+        };
+    }
+
+    /**
+     * Find shown window of given type.
+     * @param viewClass class of window's view
+     * @return view or null if no such window is shown
+     */
+    @Nullable
+    <T extends View> T find(@NonNull Class<T> viewClass) {
+        for (int i = 0; i < layout.getChildCount(); i++) {
+            View child = layout.getChildAt(i);
+            if (viewClass.isInstance(child)) {
+                return viewClass.cast(child);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Display getDefaultDisplay() {
+        return activity.getWindowManager().getDefaultDisplay();
+    }
+
+    @Override
+    public void addView(View view, ViewGroup.LayoutParams params) {
+        layout.addView(view, params);
+    }
+
+    @Override
+    public void updateViewLayout(View view, ViewGroup.LayoutParams params) {
+        checkAttached(view);
+        view.setLayoutParams(params);
+    }
+
+    @Override
+    public void removeView(View view) {
+        checkAttached(view);
+        layout.removeView(view);
+    }
+
+    @Override
+    public void removeViewImmediate(View view) {
+        removeView(view);
+    }
+
+    private void checkAttached(View view) {
+        if (view.getParent() != layout) {
+            // same as real window manager does
+            throw new IllegalArgumentException("View=" + view + " not attached to window manager");
+        }
+    }
+
+    /**
+     * Layout that places children at positions of their window params.
+     */
+    private static final class WindowLayout extends ViewGroup {
+
+        WindowLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected boolean checkLayoutParams(ViewGroup.LayoutParams params) {
+            return params instanceof WindowManager.LayoutParams;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measureChildren(widthMeasureSpec, heightMeasureSpec);
+            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                WindowManager.LayoutParams params = (WindowManager.LayoutParams) child.getLayoutParams();
+                child.layout(params.x, params.y, params.x + child.getMeasuredWidth(), params.y + child.getMeasuredHeight());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.cleveroad.audiowidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link Bubbles} math executed on every frame of bubbles animations
+ * of {@code PlayPauseButton} and {@code ExpandCollapseWidget}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BubblesBenchmark {
+
+    private static final float BUTTON_BUBBLES_ANGLE_STEP = 18.0f;
+    private static final int BUTTON_BUBBLES_COUNT = (int) (360 / BUTTON_BUBBLES_ANGLE_STEP);
+    private static final int WIDGET_BUBBLES_COUNT = 30;
+    private static final float[] BUTTON_ALPHA_FUNCTION = {0, 0, 0, 0.3f, 255, 0.5f, 225, 0.7f, 0, 1f};
+
+    private final float[] buttonBubbleSpeeds = new float[BUTTON_BUBBLES_COUNT];
+    private final float[] buttonBubbleSpeedCoefficients = new float[BUTTON_BUBBLES_COUNT];
+    private final float[] buttonBubblePositions = new float[BUTTON_BUBBLES_COUNT * 2];
+    private final float[] widgetBubbleSpeeds = new float[WIDGET_BUBBLES_COUNT];
+    private final float[] widgetBubbleOrigins = new float[WIDGET_BUBBLES_COUNT * 2];
+    private final float[] widgetBubblePositions = new float[WIDGET_BUBBLES_COUNT * 2];
+    private float randomStartAngle;
+    private float fraction;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        randomStartAngle = 360 * random.nextFloat();
+        for (int i = 0; i < BUTTON_BUBBLES_COUNT; i++) {
+            buttonBubbleSpeedCoefficients[i] = 0.5f + 0.5f * random.nextFloat();
+        }
+        for (int i = 0; i < WIDGET_BUBBLES_COUNT; i++) {
+            widgetBubbleSpeeds[i] = random.nextFloat();
+            widgetBubbleOrigins[2 * i] = 300 * random.nextFloat();
+            widgetBubbleOrigins[2 * i + 1] = 60 + 20 * random.nextFloat();
+        }
+        fraction = 0.45f;
+        Bubbles.updateRadialSpeeds(fraction, buttonBubbleSpeedCoefficients, buttonBubbleSpeeds);
+    }
+
+    /**
+     * Update step of {@code PlayPauseButton.updateBubblesPosition()}.
+     */
+    @Benchmark
+    public int buttonBubblesUpdate() {
+        int alpha = Bubbles.alpha(fraction, BUTTON_ALPHA_FUNCTION);
+        Bubbles.updateRadialSpeeds(fraction, buttonBubbleSpeedCoefficients, buttonBubbleSpeeds);
+        return alpha;
+    }
+
+    /**
+     * Bubbles positions of {@code PlayPauseButton.onDraw()}.
+     */
+    @Benchmark
+    public float[] buttonBubblesDraw() {
+        Bubbles.radialPositions(96, 96, randomStartAngle, BUTTON_BUBBLES_ANGLE_STEP, buttonBubbleSpeeds, buttonBubblePositions);
+        return buttonBubblePositions;
+    }
+
+    /**
+     * Bubbles positions of {@code ExpandCollapseWidget.onDraw()}.
+     */
+    @Benchmark
+    public float[] widgetBubblesDraw() {
+        Bubbles.verticalPositions(fraction, widgetBubbleSpeeds, widgetBubbleOrigins, widgetBubblePositions);
+        return widgetBubblePositions;
+    }
+}
@@ -0,0 +1,48 @@
+package com.cleveroad.audiowidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ColorChanger#nextColor(float)} and of keyframes blending used on high
+ * refresh rate displays ({@link ColorChanger#color(float)}). Color conversions are provided by
+ * JVM shim of {@code android.graphics.Color}, so absolute numbers differ from device ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColorChangerBenchmark {
+
+    private ColorChanger colorChanger;
+    private ColorChanger keyframesColorChanger;
+    private float dt;
+
+    @Setup
+    public void setUp() {
+        colorChanger = new ColorChanger()
+                .fromColor(0xFFFFFFFF)
+                .toColor(0xFF576FD2);
+        keyframesColorChanger = new ColorChanger()
+                .fromColor(0xFFFFFFFF)
+                .toColor(0xFF576FD2)
+                .keyframes(39);
+        dt = 0.42f;
+    }
+
+    @Benchmark
+    public int nextColor() {
+        return colorChanger.nextColor(dt);
+    }
+
+    @Benchmark
+    public int keyframeColor() {
+        return keyframesColorChanger.color(dt);
+    }
+}
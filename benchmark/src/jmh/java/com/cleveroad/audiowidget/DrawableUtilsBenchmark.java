@@ -0,0 +1,56 @@
+package com.cleveroad.audiowidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link DrawableUtils} math used on every animation frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrawableUtilsBenchmark {
+
+    private static final float[] ALPHA_FUNCTION = {0, 0, 0, 0.3f, 255, 0.5f, 225, 0.7f, 0, 1f};
+
+    private float t;
+    private float angle;
+
+    @Setup
+    public void setUp() {
+        t = 0.6f;
+        angle = 123.4f;
+    }
+
+    @Benchmark
+    public float customFunction() {
+        return DrawableUtils.customFunction(t, ALPHA_FUNCTION);
+    }
+
+    @Benchmark
+    public float customFunctionVarargs() {
+        return DrawableUtils.customFunction(t, 0, 0, 0, 0.3f, 255, 0.5f, 225, 0.7f, 0, 1f);
+    }
+
+    @Benchmark
+    public float normalize() {
+        return DrawableUtils.normalize(t * 100, 20, 80);
+    }
+
+    @Benchmark
+    public float rotateX() {
+        return DrawableUtils.rotateX(50, 10, 50, 50, angle);
+    }
+
+    @Benchmark
+    public float rotateY() {
+        return DrawableUtils.rotateY(50, 10, 50, 50, angle);
+    }
+}
@@ -0,0 +1,70 @@
+package com.cleveroad.audiowidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link PlaybackState} listeners dispatch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaybackStateBenchmark {
+
+    /**
+     * Number of listeners. Each widget registers two of them.
+     */
+    @Param({"2", "4", "8"})
+    public int listenersCount;
+
+    private PlaybackState playbackState;
+    private int position;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        playbackState = new PlaybackState().duration(180000);
+        for (int i = 0; i < listenersCount; i++) {
+            playbackState.addPlaybackStateListener(new ConsumingListener(blackhole));
+        }
+    }
+
+    @Benchmark
+    public void progressChanged() {
+        position = (position + 1000) % 180000;
+        playbackState.position(position);
+    }
+
+    @Benchmark
+    public void stateChanged() {
+        playbackState.start(this);
+        playbackState.pause(this);
+    }
+
+    private static final class ConsumingListener implements PlaybackState.PlaybackStateListener {
+
+        private final Blackhole blackhole;
+
+        ConsumingListener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onStateChanged(int oldState, int newState, Object initiator) {
+            blackhole.consume(newState);
+        }
+
+        @Override
+        public void onProgressChanged(int position, int duration, float percentage) {
+            blackhole.consume(percentage);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package android.graphics;
+
+/**
+ * JVM stub of Android's {@code Bitmap} used by benchmarks.
+ */
+public class Bitmap {
+
+    public int getByteCount() {
+        return 0;
+    }
+}
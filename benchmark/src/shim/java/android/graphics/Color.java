@@ -0,0 +1,94 @@
+package android.graphics;
+
+/**
+ * JVM implementation of Android's {@code Color} used by benchmarks. Conversions follow Skia's
+ * {@code SkRGBToHSV} and {@code SkHSVToColor}.
+ */
+public class Color {
+
+    private Color() {
+
+    }
+
+    public static int alpha(int color) {
+        return color >>> 24;
+    }
+
+    public static int red(int color) {
+        return (color >> 16) & 0xFF;
+    }
+
+    public static int green(int color) {
+        return (color >> 8) & 0xFF;
+    }
+
+    public static int blue(int color) {
+        return color & 0xFF;
+    }
+
+    public static int argb(int alpha, int red, int green, int blue) {
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    public static void colorToHSV(int color, float[] hsv) {
+        int r = red(color);
+        int g = green(color);
+        int b = blue(color);
+        int min = Math.min(r, Math.min(g, b));
+        int max = Math.max(r, Math.max(g, b));
+        int delta = max - min;
+        hsv[2] = max / 255f;
+        if (delta == 0) {
+            hsv[0] = 0;
+            hsv[1] = 0;
+            return;
+        }
+        float h;
+        if (r == max) {
+            h = (float) (g - b) / delta;
+        } else if (g == max) {
+            h = 2 + (float) (b - r) / delta;
+        } else {
+            h = 4 + (float) (r - g) / delta;
+        }
+        h *= 60;
+        if (h < 0) {
+            h += 360;
+        }
+        hsv[0] = h;
+        hsv[1] = (float) delta / max;
+    }
+
+    public static int HSVToColor(float[] hsv) {
+        return HSVToColor(0xFF, hsv);
+    }
+
+    public static int HSVToColor(int alpha, float[] hsv) {
+        float s = Math.max(0, Math.min(hsv[1], 1));
+        float v = Math.max(0, Math.min(hsv[2], 1));
+        int vByte = Math.round(v * 255);
+        if (s <= 0) {
+            return argb(alpha, vByte, vByte, vByte);
+        }
+        float hx = hsv[0] < 0 || hsv[0] >= 360 ? 0 : hsv[0] / 60;
+        int w = (int) Math.floor(hx);
+        float f = hx - w;
+        int p = Math.round((1 - s) * v * 255);
+        int q = Math.round((1 - s * f) * v * 255);
+        int t = Math.round((1 - s * (1 - f)) * v * 255);
+        switch (w) {
+            case 0:
+                return argb(alpha, vByte, t, p);
+            case 1:
+                return argb(alpha, q, vByte, p);
+            case 2:
+                return argb(alpha, p, vByte, t);
+            case 3:
+                return argb(alpha, p, q, vByte);
+            case 4:
+                return argb(alpha, t, p, vByte);
+            default:
+                return argb(alpha, vByte, p, q);
+        }
+    }
+}
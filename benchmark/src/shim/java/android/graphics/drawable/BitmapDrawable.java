@@ -0,0 +1,13 @@
+package android.graphics.drawable;
+
+import android.graphics.Bitmap;
+
+/**
+ * JVM stub of Android's {@code BitmapDrawable} used by benchmarks.
+ */
+public class BitmapDrawable extends Drawable {
+
+    public final Bitmap getBitmap() {
+        return null;
+    }
+}
@@ -0,0 +1,8 @@
+package android.graphics.drawable;
+
+/**
+ * JVM stub of Android's {@code Drawable} used by benchmarks.
+ */
+public abstract class Drawable {
+
+}
@@ -0,0 +1,14 @@
+package android.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * JVM stub of support library's {@code @Nullable} used by benchmarks.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+public @interface Nullable {
+
+}
@@ -0,0 +1,16 @@
+package com.cleveroad.audiowidget;
+
+/**
+ * Playback state constants of library's {@code Configuration} used by benchmarked sources.
+ * Values must be kept in sync with library.
+ */
+class Configuration {
+
+    public static final int STATE_STOPPED = 0;
+    public static final int STATE_PLAYING = 1;
+    public static final int STATE_PAUSED = 2;
+
+    private Configuration() {
+
+    }
+}